@@ -1,5 +1,6 @@
 package com.mahmud;
 
+import com.mahmud.controller.MainController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -7,10 +8,13 @@ import javafx.stage.Stage;
 
 public class App extends Application {
     
+    private MainController controller;
+    
     @Override
     public void start(Stage primaryStage) throws Exception {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/main.fxml"));
         Scene scene = new Scene(loader.load(), 800, 600);
+        controller = loader.getController();
         
         primaryStage.setTitle("YouTube Video Downloader");
         primaryStage.setScene(scene);
@@ -19,6 +23,14 @@ public class App extends Application {
         primaryStage.show();
     }
     
+    @Override
+    public void stop() {
+        // Kill any yt-dlp processes still running for queued jobs
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
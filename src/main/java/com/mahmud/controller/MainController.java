@@ -1,14 +1,23 @@
 package com.mahmud.controller;
 
+import com.mahmud.distributed.CoordinatorClient;
+import com.mahmud.model.BatchBudget;
 import com.mahmud.model.BrowserType;
+import com.mahmud.model.DownloadJob;
 import com.mahmud.model.DownloadOption;
-import com.mahmud.model.DownloadProgress;
+import com.mahmud.model.JobStatus;
+import com.mahmud.service.ContentDeduplicator;
+import com.mahmud.service.DownloadQueue;
 import com.mahmud.service.DownloadService;
+import com.mahmud.service.JobQueue;
+import com.mahmud.service.QualityPlanner;
+import com.mahmud.service.YtDlpService;
 import javafx.application.Platform;
-import javafx.concurrent.Task;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
+import javafx.scene.control.cell.ProgressBarTableCell;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 
@@ -24,22 +33,37 @@ public class MainController implements Initializable {
     @FXML private CheckBox useCookiesCheckBox;
     @FXML private ComboBox<BrowserType> browserComboBox;
     @FXML private VBox formatOptionsContainer;
+    @FXML private TextField budgetField;
     @FXML private RadioButton defaultRadio;
     @FXML private RadioButton videoOnlyRadio;
     @FXML private RadioButton audioOnlyRadio;
     @FXML private TextField downloadPathField;
     @FXML private Button browseButton;
     @FXML private Button downloadButton;
-    @FXML private ProgressBar progressBar;
-    @FXML private Label progressLabel;
+    @FXML private TableView<DownloadJob> jobTable;
+    @FXML private TableColumn<DownloadJob, String> urlColumn;
+    @FXML private TableColumn<DownloadJob, String> formatColumn;
+    @FXML private TableColumn<DownloadJob, JobStatus> statusColumn;
+    @FXML private TableColumn<DownloadJob, Double> progressColumn;
+    @FXML private TableColumn<DownloadJob, String> detailColumn;
     @FXML private Label statusLabel;
     @FXML private TextArea logArea;
     
-    private final DownloadService downloadService = new DownloadService();
-    private final List<CheckBox> formatCheckBoxes = new ArrayList<>();
-    private List<DownloadOption> availableFormats = new ArrayList<>();
+    private static final int MAX_CONCURRENT_DOWNLOADS = 3;
+    // Older lines are dropped from the log beyond this, so appends stay cheap
+    private static final int MAX_LOG_CHARS = 100_000;
+    
+    // -Dytdl.coordinator=http://host:port hands downloads to remote workers instead,
+    // authenticating with -Dytdl.coordinator.token if the coordinator wants one
+    private final JobQueue downloadQueue = System.getProperty("ytdl.coordinator") != null
+        ? new CoordinatorClient(System.getProperty("ytdl.coordinator"), System.getProperty("ytdl.coordinator.token"))
+        : new DownloadQueue(new DownloadService(), MAX_CONCURRENT_DOWNLOADS);
+    private final YtDlpService ytDlpService = new YtDlpService();
+    private final ToggleGroup formatToggleGroup = new ToggleGroup();
+    private final List<RadioButton> formatButtons = new ArrayList<>();
     private List<DownloadOption> allPresetFormats = new ArrayList<>();
-    private Task<Void> currentDownloadTask;
+    // Lines waiting for the next log update; guarded by itself
+    private final StringBuilder pendingLog = new StringBuilder();
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -47,6 +71,7 @@ public class MainController implements Initializable {
         setupEventHandlers();
     // Populate presets immediately (no fetch button required)
     populatePresets();
+    buildFormatChooser();
     // Default selection
     if (defaultRadio != null) defaultRadio.setSelected(true);
     displayFilteredFormats();
@@ -64,10 +89,39 @@ public class MainController implements Initializable {
     // Initially disable download button
         downloadButton.setDisable(true);
         
-        // Setup progress bar
-        progressBar.setProgress(0);
-        progressBar.setVisible(false);
-        progressLabel.setVisible(false);
+        // Setup jobs table. A fixed row height lets the table skip measuring rows,
+        // so only the visible cells are ever created and laid out.
+        jobTable.setItems(downloadQueue.getJobs());
+        jobTable.setFixedCellSize(24);
+        jobTable.setPlaceholder(new Label("No downloads queued"));
+        jobTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        urlColumn.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getUrl()));
+        formatColumn.setCellValueFactory(c -> c.getValue().formatProperty());
+        statusColumn.setCellValueFactory(c -> c.getValue().statusProperty());
+        progressColumn.setCellValueFactory(c -> c.getValue().progressProperty().asObject());
+        progressColumn.setCellFactory(ProgressBarTableCell.forTableColumn());
+        detailColumn.setCellValueFactory(c -> c.getValue().detailProperty());
+        jobTable.getSelectionModel().selectedItemProperty().addListener((obs, oldJob, newJob) -> {
+            statusLabel.textProperty().unbind();
+            if (newJob != null) {
+                statusLabel.textProperty().bind(newJob.messageProperty());
+            } else {
+                statusLabel.setText("Ready");
+            }
+        });
+        downloadQueue.setOnJobFinished(this::onJobFinished);
+        if (downloadQueue instanceof DownloadQueue localQueue) {
+            localQueue.getConcurrencyController().setOnLimitChanged(this::appendLog);
+            ContentDeduplicator deduplicator = ContentDeduplicator.fromSystemProperties();
+            if (deduplicator != null) {
+                deduplicator.setOnResult(this::appendLog);
+                localQueue.setContentDeduplicator(deduplicator);
+            }
+        } else if (downloadQueue instanceof CoordinatorClient client) {
+            // Throttling and dedup happen on the workers and show up in their logs
+            client.setOnConnectionChanged(this::appendLog);
+            appendLog("Sending downloads to coordinator " + System.getProperty("ytdl.coordinator"));
+        }
 
     // Setup radio toggle group programmatically
     javafx.scene.control.ToggleGroup tg = new javafx.scene.control.ToggleGroup();
@@ -92,6 +146,12 @@ public class MainController implements Initializable {
         // Download button action
         downloadButton.setOnAction(e -> startDownload());
         
+        // Only allow downloading once a format is chosen
+        formatToggleGroup.selectedToggleProperty().addListener((obs, oldToggle, newToggle) -> {
+            downloadButton.setDisable(newToggle == null);
+            budgetField.setDisable(newToggle == null || !((DownloadOption) newToggle.getUserData()).isAuto());
+        });
+        
         // URL field enter key
         urlField.setOnAction(e -> fetchFormats());
     }
@@ -110,6 +170,7 @@ public class MainController implements Initializable {
         allPresetFormats.add(new DownloadOption("best[height<=480]", "mp4", "480p", null, "480p (video+audio)"));
         allPresetFormats.add(new DownloadOption("best[height<=720]", "mp4", "720p", null, "720p (video+audio)"));
         allPresetFormats.add(new DownloadOption("best[height<=1080]", "mp4", "1080p", null, "1080p (video+audio)"));
+        allPresetFormats.add(DownloadOption.AUTO);
 
         // Video only
         allPresetFormats.add(new DownloadOption("bestvideo[height<=360]", "mp4", "360p", null, "360p (video only)"));
@@ -123,101 +184,48 @@ public class MainController implements Initializable {
         allPresetFormats.add(new DownloadOption("bestaudio[abr<=64]", "m4a", "audio only", null, "Audio 64kbps (m4a)"));
     }
 
-    private void displayFilteredFormats() {
-        List<DownloadOption> filtered = new ArrayList<>();
-        if (defaultRadio != null && defaultRadio.isSelected()) {
-            for (DownloadOption o : allPresetFormats) {
-                if (!o.getResolution().equalsIgnoreCase("audio only") && !o.getDescription().toLowerCase().contains("video only")) {
-                    // include those marked as video+audio
-                    if (o.getDescription().toLowerCase().contains("video+audio") || o.getDescription().toLowerCase().contains("video (video+audio)") || o.getDescription().toLowerCase().contains("(video+audio)") || o.getFormatId().startsWith("best[")) {
-                        filtered.add(o);
-                    }
-                }
-            }
-        } else if (videoOnlyRadio != null && videoOnlyRadio.isSelected()) {
-            for (DownloadOption o : allPresetFormats) {
-                if (o.getDescription().toLowerCase().contains("video only") || o.getFormatId().startsWith("bestvideo")) {
-                    filtered.add(o);
-                }
-            }
-        } else if (audioOnlyRadio != null && audioOnlyRadio.isSelected()) {
-            for (DownloadOption o : allPresetFormats) {
-                if (o.getResolution().equalsIgnoreCase("audio only") || o.getDescription().toLowerCase().contains("audio")) {
-                    filtered.add(o);
-                }
-            }
-        }
-
-        availableFormats = filtered;
-        displayFormats(availableFormats);
-    }
-    
-    private void displayFormats(List<DownloadOption> formats) {
-        formatCheckBoxes.clear();
+    // Builds one radio button per preset up front; switching the type only toggles
+    // which of them are shown instead of recreating the nodes.
+    private void buildFormatChooser() {
         formatOptionsContainer.getChildren().clear();
-        
-        if (formats.isEmpty()) {
-            Label noFormatsLabel = new Label("No formats available");
-            formatOptionsContainer.getChildren().add(noFormatsLabel);
-            return;
+        formatButtons.clear();
+        for (DownloadOption format : allPresetFormats) {
+            RadioButton button = new RadioButton(format.toString());
+            button.setUserData(format);
+            button.setToggleGroup(formatToggleGroup);
+            formatButtons.add(button);
         }
-        
-        // Group formats by type (video/audio)
-        List<DownloadOption> videoFormats = new ArrayList<>();
-        List<DownloadOption> audioFormats = new ArrayList<>();
-        
-        for (DownloadOption format : formats) {
-            if (format.getResolution().equals("audio only")) {
-                audioFormats.add(format);
-            } else {
-                videoFormats.add(format);
+        formatOptionsContainer.getChildren().addAll(formatButtons);
+    }
+
+    private void displayFilteredFormats() {
+        boolean selectionVisible = false;
+        for (RadioButton button : formatButtons) {
+            boolean visible = matchesSelectedType((DownloadOption) button.getUserData());
+            button.setVisible(visible);
+            button.setManaged(visible);
+            if (visible && button.isSelected()) {
+                selectionVisible = true;
             }
         }
-        
-        // Add video formats
-        if (!videoFormats.isEmpty()) {
-            Label videoLabel = new Label("Video Formats:");
-            videoLabel.setStyle("-fx-font-weight: bold;");
-            formatOptionsContainer.getChildren().add(videoLabel);
-            
-            for (DownloadOption format : videoFormats) {
-                CheckBox checkBox = new CheckBox(format.toString());
-                checkBox.setUserData(format);
-                formatCheckBoxes.add(checkBox);
-                formatOptionsContainer.getChildren().add(checkBox);
-            }
+        if (!selectionVisible) {
+            formatToggleGroup.selectToggle(null);
         }
-        
-        // Add audio formats
-        if (!audioFormats.isEmpty()) {
-            Label audioLabel = new Label("Audio Formats:");
-            audioLabel.setStyle("-fx-font-weight: bold;");
-            formatOptionsContainer.getChildren().add(audioLabel);
-            
-            for (DownloadOption format : audioFormats) {
-                CheckBox checkBox = new CheckBox(format.toString());
-                checkBox.setUserData(format);
-                formatCheckBoxes.add(checkBox);
-                formatOptionsContainer.getChildren().add(checkBox);
+    }
+
+    private boolean matchesSelectedType(DownloadOption o) {
+        if (defaultRadio != null && defaultRadio.isSelected()) {
+            if (!o.getResolution().equalsIgnoreCase("audio only") && !o.getDescription().toLowerCase().contains("video only")) {
+                // include those marked as video+audio
+                return o.getDescription().toLowerCase().contains("video+audio") || o.getFormatId().startsWith("best[");
             }
+            return false;
+        } else if (videoOnlyRadio != null && videoOnlyRadio.isSelected()) {
+            return o.getDescription().toLowerCase().contains("video only") || o.getFormatId().startsWith("bestvideo");
+        } else if (audioOnlyRadio != null && audioOnlyRadio.isSelected()) {
+            return o.getResolution().equalsIgnoreCase("audio only") || o.getDescription().toLowerCase().contains("audio");
         }
-        
-        // Enable download button when formats are available
-        downloadButton.setDisable(false);
-        
-        // Add listener to checkboxes to ensure only one is selected
-        for (CheckBox checkBox : formatCheckBoxes) {
-            checkBox.setOnAction(e -> {
-                if (checkBox.isSelected()) {
-                    // Uncheck all other checkboxes
-                    for (CheckBox otherCheckBox : formatCheckBoxes) {
-                        if (otherCheckBox != checkBox) {
-                            otherCheckBox.setSelected(false);
-                        }
-                    }
-                }
-            });
-        }
+        return false;
     }
     
     @FXML
@@ -243,19 +251,20 @@ public class MainController implements Initializable {
     @FXML
     private void startDownload() {
         // Get selected format
-        DownloadOption selectedFormat = null;
-        for (CheckBox checkBox : formatCheckBoxes) {
-            if (checkBox.isSelected()) {
-                selectedFormat = (DownloadOption) checkBox.getUserData();
-                break;
-            }
-        }
+        Toggle selectedToggle = formatToggleGroup.getSelectedToggle();
+        DownloadOption selectedFormat = selectedToggle != null ? (DownloadOption) selectedToggle.getUserData() : null;
         
         if (selectedFormat == null) {
             showAlert("Error", "Please select a format to download");
             return;
         }
         
+        String[] urls = urlField.getText().trim().split("\\s+");
+        if (urls.length == 0 || urls[0].isEmpty()) {
+            showAlert("Error", "Please enter a video URL");
+            return;
+        }
+        
         String downloadPath = downloadPathField.getText().trim();
         if (downloadPath.isEmpty()) {
             showAlert("Error", "Please select a download location");
@@ -268,80 +277,79 @@ public class MainController implements Initializable {
             return;
         }
         
-        // Disable UI elements during download
-        setUIEnabled(false);
-        progressBar.setVisible(true);
-        progressLabel.setVisible(true);
-        progressBar.setProgress(0);
-        statusLabel.setText("Starting download...");
-        logArea.clear();
-        
-        // Start download task
-        currentDownloadTask = downloadService.downloadVideo(
-            urlField.getText().trim(),
-            selectedFormat,
-            downloadPath,
-            useCookiesCheckBox.isSelected(),
-            useCookiesCheckBox.isSelected() ? browserComboBox.getValue() : null,
-            this::updateProgress,
-            this::updateStatus
-        );
-        
-        currentDownloadTask.setOnSucceeded(e -> Platform.runLater(() -> {
-            setUIEnabled(true);
-            progressBar.setProgress(1.0);
-            progressLabel.setText("Download completed!");
-            statusLabel.setText("Download completed successfully");
-            showAlert("Success", "Video downloaded successfully!");
-        }));
-        
-        currentDownloadTask.setOnFailed(e -> Platform.runLater(() -> {
-            setUIEnabled(true);
-            progressBar.setProgress(0);
-            progressLabel.setText("Download failed");
-            statusLabel.setText("Download failed");
-            Throwable exception = currentDownloadTask.getException();
-            showAlert("Error", "Download failed: " + 
-                     (exception != null ? exception.getMessage() : "Unknown error"));
-        }));
-        
-        currentDownloadTask.setOnCancelled(e -> Platform.runLater(() -> {
-            setUIEnabled(true);
-            progressBar.setProgress(0);
-            progressLabel.setText("Download cancelled");
-            statusLabel.setText("Download cancelled");
-        }));
+        // Auto quality: the URLs submitted together form one batch sharing the budget
+        QualityPlanner planner = null;
+        if (selectedFormat.isAuto()) {
+            if (!(downloadQueue instanceof DownloadQueue)) {
+                showAlert("Error", "Auto quality is only available for local downloads");
+                return;
+            }
+            try {
+                planner = new QualityPlanner(BatchBudget.parse(budgetField.getText()), ytDlpService);
+            } catch (IllegalArgumentException e) {
+                showAlert("Error", e.getMessage());
+                return;
+            }
+        }
         
-        new Thread(currentDownloadTask).start();
+        boolean useCookies = useCookiesCheckBox.isSelected();
+        BrowserType browserType = useCookies ? browserComboBox.getValue() : null;
+        StringBuilder log = new StringBuilder();
+        if (planner != null) {
+            log.append("Batch of ").append(urls.length).append(" with budget ").append(planner.getBudget()).append("\n");
+        }
+        List<DownloadJob> batch = new ArrayList<>(urls.length);
+        for (String url : urls) {
+            DownloadJob job = new DownloadJob(url, selectedFormat, downloadPath, useCookies, browserType);
+            batch.add(job);
+            log.append("Queued ").append(job).append("\n");
+        }
+        if (planner != null && downloadQueue instanceof DownloadQueue localQueue) {
+            localQueue.submitAll(batch, planner);
+        } else {
+            downloadQueue.submitAll(batch);
+        }
+        appendLog(log.toString().stripTrailing());
+        urlField.clear();
     }
     
-    private void updateProgress(DownloadProgress progress) {
-        Platform.runLater(() -> {
-            progressBar.setProgress(progress.getPercentage() / 100.0);
-            progressLabel.setText(String.format("%.1f%% - %s - ETA: %s", 
-                progress.getPercentage(), progress.getSpeed(), progress.getEta()));
-        });
+    private void onJobFinished(DownloadJob job) {
+        appendLog(job.getStatus() + " " + job);
+        if (job.getStatus() == JobStatus.FAILED && job.getErrorMessage() != null) {
+            appendLog("  " + job.getErrorMessage());
+        }
     }
-    
-    private void updateStatus(String status) {
-        Platform.runLater(() -> {
-            statusLabel.setText(status);
-            logArea.appendText(status + "\n");
-        });
+
+    // May be called from any thread. Lines are collected and written with one
+    // appendText per UI pulse, however many jobs finish in the same flush.
+    private void appendLog(String line) {
+        synchronized (pendingLog) {
+            boolean scheduled = pendingLog.length() > 0;
+            pendingLog.append(line).append('\n');
+            if (scheduled) {
+                return;
+            }
+        }
+        Platform.runLater(this::flushLog);
     }
-    
-    private void setUIEnabled(boolean enabled) {
-        urlField.setDisable(!enabled);
-        useCookiesCheckBox.setDisable(!enabled);
-        browserComboBox.setDisable(!enabled || !useCookiesCheckBox.isSelected());
-    // fetchButton was removed; no-op
-        downloadPathField.setDisable(!enabled);
-        browseButton.setDisable(!enabled);
-        downloadButton.setDisable(!enabled);
-        
-        for (CheckBox checkBox : formatCheckBoxes) {
-            checkBox.setDisable(!enabled);
+
+    private void flushLog() {
+        String text;
+        synchronized (pendingLog) {
+            text = pendingLog.toString();
+            pendingLog.setLength(0);
+        }
+        if (text.length() > MAX_LOG_CHARS) {
+            text = text.substring(text.length() - MAX_LOG_CHARS);
         }
+        int excess = logArea.getLength() + text.length() - MAX_LOG_CHARS;
+        if (excess > 0) {
+            // Cut at a line boundary so the first line left isn't a fragment
+            int end = Math.min(logArea.getLength(), excess + 200);
+            int newline = logArea.getText(excess, end).indexOf('\n');
+            logArea.deleteText(0, newline >= 0 ? excess + newline + 1 : end);
+        }
+        logArea.appendText(text);
     }
     
     private void showAlert(String title, String message) {
@@ -354,8 +362,22 @@ public class MainController implements Initializable {
     
     @FXML
     private void cancelDownload() {
-        if (currentDownloadTask != null && currentDownloadTask.isRunning()) {
-            currentDownloadTask.cancel();
+        for (DownloadJob job : new ArrayList<>(jobTable.getSelectionModel().getSelectedItems())) {
+            downloadQueue.cancel(job);
         }
     }
+    
+    @FXML
+    private void cancelAllDownloads() {
+        downloadQueue.cancelAll();
+    }
+    
+    @FXML
+    private void clearFinishedDownloads() {
+        downloadQueue.clearFinished();
+    }
+    
+    public void shutdown() {
+        downloadQueue.shutdown();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,374 @@
+package com.mahmud.distributed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.model.JobStatus;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Hands out download jobs to worker processes and collects their progress, over a
+// small JSON/HTTP API:
+//
+//   POST /jobs              submit a RemoteJob (idempotent on its id)
+//   GET  /jobs?since=N      jobs changed after version N
+//   POST /jobs/{id}/cancel  cancel a queued or running job
+//   POST /lease             {"workerId": ...} -> 200 Lease, or 204 when nothing is queued
+//   POST /heartbeat         [WorkerReport, ...] for all of a worker's leases ->
+//                           {leaseId: "ok" | "cancel" | "expired"}
+//   POST /complete          WorkerReport with the final status, 410 if the lease is gone
+//   GET  /metrics           per-worker counters and queue sizes
+//
+// Every response carries the coordinator's epoch, which changes on restart, so clients
+// can tell that versions started again from zero.
+//
+// A lease that isn't renewed by a heartbeat within leaseMillis is taken back and the
+// job queued again, so a crashed worker only costs the time until its leases expire.
+//
+// Workers run whatever is submitted here, so the coordinator only listens on loopback
+// unless -Dytdl.coordinator.host says otherwise, and then it requires a shared token
+// (-Dytdl.coordinator.token) on every request.
+//
+// Usage: java -cp <classpath> com.mahmud.distributed.Coordinator [port]
+public class Coordinator {
+    public static final int DEFAULT_PORT = 8787;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final ObjectMapper MAPPER = JsonHttp.MAPPER;
+
+    private final long leaseMillis;
+    private final byte[] token;
+    private final String epoch = UUID.randomUUID().toString();
+    private final HttpServer server;
+    private final ExecutorService httpThreads;
+    private final ScheduledExecutorService sweeper;
+
+    // All state below is guarded by this. Responses are written after the lock is released,
+    // so they carry copies: serializing a live job could pair its old status with a newer
+    // version, and a client polling with since= would then never see the change.
+    private final Map<String, RemoteJob> jobs = new LinkedHashMap<>();
+    private final Deque<String> queued = new ArrayDeque<>();
+    private final Map<String, LeaseState> leases = new HashMap<>();
+    private final Map<String, WorkerStats> workers = new TreeMap<>();
+    private long version;
+
+    private static final class LeaseState {
+        final String jobId;
+        final String workerId;
+        long expiresAt;
+
+        LeaseState(String jobId, String workerId, long expiresAt) {
+            this.jobId = jobId;
+            this.workerId = workerId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // token may be null only when listening on a loopback address
+    public Coordinator(String host, int port, long leaseMillis, String token) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (token == null && !address.getAddress().isLoopbackAddress()) {
+            throw new IllegalArgumentException("A token is required to listen on " + host);
+        }
+        this.leaseMillis = leaseMillis;
+        this.token = token != null ? token.getBytes(StandardCharsets.UTF_8) : null;
+        this.server = HttpServer.create(address, 0);
+        this.httpThreads = Executors.newFixedThreadPool(8);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor();
+        server.setExecutor(httpThreads);
+        server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String host = System.getProperty("ytdl.coordinator.host", "127.0.0.1");
+        Coordinator coordinator = new Coordinator(host, port, Long.getLong("ytdl.lease.millis", 15_000),
+            System.getProperty("ytdl.coordinator.token"));
+        coordinator.start();
+        System.out.println("Coordinator listening on " + host + ":" + coordinator.getPort());
+    }
+
+    public void start() {
+        server.start();
+        long sweepEvery = Math.max(100, leaseMillis / 4);
+        sweeper.scheduleWithFixedDelay(this::expireLeases, sweepEvery, sweepEvery, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        server.stop(0);
+        httpThreads.shutdownNow();
+        sweeper.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public synchronized List<WorkerStats> getWorkerStats() {
+        return copyOfWorkers();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            exchange.getResponseHeaders().set(JsonHttp.EPOCH_HEADER, epoch);
+
+            if (!authorized(exchange)) {
+                respond(exchange, 401, Map.of("error", "missing or wrong token"));
+            } else if (method.equals("POST") && path.equals("/jobs")) {
+                respond(exchange, 200, submit(MAPPER.readValue(exchange.getRequestBody(), RemoteJob.class)));
+            } else if (method.equals("GET") && path.equals("/jobs")) {
+                respond(exchange, 200, changedSince(sinceParameter(exchange.getRequestURI().getQuery())));
+            } else if (method.equals("POST") && path.startsWith("/jobs/") && path.endsWith("/cancel")) {
+                String id = path.substring("/jobs/".length(), path.length() - "/cancel".length());
+                respond(exchange, cancel(id) ? 200 : 404, Map.of());
+            } else if (method.equals("POST") && path.equals("/lease")) {
+                Map<?, ?> request = MAPPER.readValue(exchange.getRequestBody(), Map.class);
+                Lease lease = lease(String.valueOf(request.get("workerId")));
+                if (lease != null) {
+                    respond(exchange, 200, lease);
+                } else {
+                    respond(exchange, 204, null);
+                }
+            } else if (method.equals("POST") && path.equals("/heartbeat")) {
+                respond(exchange, 200, heartbeat(MAPPER.readValue(exchange.getRequestBody(), WorkerReport[].class)));
+            } else if (method.equals("POST") && path.equals("/complete")) {
+                boolean known = complete(MAPPER.readValue(exchange.getRequestBody(), WorkerReport.class));
+                respond(exchange, known ? 200 : 410, Map.of());
+            } else if (method.equals("GET") && path.equals("/metrics")) {
+                respond(exchange, 200, metrics());
+            } else {
+                respond(exchange, 404, Map.of("error", "not found"));
+            }
+        } catch (IOException | RuntimeException e) {
+            respond(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        if (token == null) {
+            return true;
+        }
+        String given = exchange.getRequestHeaders().getFirst(JsonHttp.TOKEN_HEADER);
+        return given != null && MessageDigest.isEqual(token, given.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private synchronized RemoteJob submit(RemoteJob job) {
+        if (job.getId() == null || job.getUrl() == null) {
+            throw new IllegalArgumentException("job needs an id and a url");
+        }
+        // The URL ends up on a worker's yt-dlp command line; only plain web URLs
+        URI uri = URI.create(job.getUrl());
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())
+                || uri.getHost() == null) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + job.getUrl());
+        }
+        RemoteJob existing = jobs.get(job.getId());
+        if (existing != null) {
+            return existing.copy();
+        }
+        job.setStatus(JobStatus.QUEUED);
+        job.setVersion(++version);
+        jobs.put(job.getId(), job);
+        queued.add(job.getId());
+        return job.copy();
+    }
+
+    private synchronized List<RemoteJob> changedSince(long since) {
+        List<RemoteJob> changed = new ArrayList<>();
+        for (RemoteJob job : jobs.values()) {
+            if (job.getVersion() > since) {
+                changed.add(job.copy());
+            }
+        }
+        return changed;
+    }
+
+    private synchronized boolean cancel(String id) {
+        RemoteJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        if (job.getStatus() == JobStatus.QUEUED) {
+            queued.remove(id);
+            job.setStatus(JobStatus.CANCELLED);
+        } else if (job.getStatus() == JobStatus.RUNNING) {
+            // Passed on with the worker's next heartbeat
+            job.setCancelRequested(true);
+        }
+        job.setVersion(++version);
+        return true;
+    }
+
+    private synchronized Lease lease(String workerId) {
+        WorkerStats stats = worker(workerId);
+        String jobId = queued.poll();
+        if (jobId == null) {
+            return null;
+        }
+        RemoteJob job = jobs.get(jobId);
+        String leaseId = UUID.randomUUID().toString();
+        leases.put(leaseId, new LeaseState(jobId, workerId, System.currentTimeMillis() + leaseMillis));
+        stats.setActiveLeases(stats.getActiveLeases() + 1);
+
+        job.setStatus(JobStatus.RUNNING);
+        job.setWorkerId(workerId);
+        job.setAttempts(job.getAttempts() + 1);
+        job.setPercentage(0);
+        job.setVersion(++version);
+        return new Lease(leaseId, leaseMillis, job.copy());
+    }
+
+    // Renews all of a worker's leases at once, so a worker with many jobs needs one
+    // round trip per heartbeat. Tells it per lease to go on, cancel, or drop the job.
+    private synchronized Map<String, String> heartbeat(WorkerReport[] reports) {
+        Map<String, String> replies = new LinkedHashMap<>();
+        for (WorkerReport report : reports) {
+            LeaseState lease = leases.get(report.getLeaseId());
+            worker(report.getWorkerId());
+            if (lease == null) {
+                replies.put(report.getLeaseId(), "expired");
+                continue;
+            }
+            lease.expiresAt = System.currentTimeMillis() + leaseMillis;
+            RemoteJob job = jobs.get(lease.jobId);
+            job.setPercentage(report.getPercentage());
+            job.setSpeed(report.getSpeed());
+            job.setEta(report.getEta());
+            job.setMessage(report.getMessage());
+            job.setVersion(++version);
+            replies.put(report.getLeaseId(), job.isCancelRequested() ? "cancel" : "ok");
+        }
+        return replies;
+    }
+
+    private synchronized boolean complete(WorkerReport report) {
+        LeaseState lease = leases.remove(report.getLeaseId());
+        WorkerStats stats = worker(report.getWorkerId());
+        if (lease == null) {
+            stats.setLateCompletions(stats.getLateCompletions() + 1);
+            return false;
+        }
+        stats.setActiveLeases(Math.max(0, stats.getActiveLeases() - 1));
+        RemoteJob job = jobs.get(lease.jobId);
+        JobStatus status = report.getStatus() != null ? report.getStatus() : JobStatus.FAILED;
+        switch (status) {
+            case COMPLETED -> {
+                stats.setCompleted(stats.getCompleted() + 1);
+                stats.setBytes(stats.getBytes() + report.getBytes());
+                job.setPercentage(100);
+            }
+            case CANCELLED -> stats.setCancelled(stats.getCancelled() + 1);
+            default -> stats.setFailed(stats.getFailed() + 1);
+        }
+        job.setStatus(status);
+        job.setError(report.getError());
+        job.setMessage(report.getMessage());
+        job.setVersion(++version);
+        return true;
+    }
+
+    private synchronized void expireLeases() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, LeaseState>> it = leases.entrySet().iterator();
+        while (it.hasNext()) {
+            LeaseState lease = it.next().getValue();
+            if (lease.expiresAt > now) {
+                continue;
+            }
+            it.remove();
+            WorkerStats stats = worker(lease.workerId);
+            stats.setActiveLeases(Math.max(0, stats.getActiveLeases() - 1));
+            stats.setLeasesExpired(stats.getLeasesExpired() + 1);
+
+            RemoteJob job = jobs.get(lease.jobId);
+            if (job.isCancelRequested()) {
+                job.setStatus(JobStatus.CANCELLED);
+            } else if (job.getAttempts() >= MAX_ATTEMPTS) {
+                job.setStatus(JobStatus.FAILED);
+                job.setError("Worker lost " + job.getAttempts() + " times");
+            } else {
+                job.setStatus(JobStatus.QUEUED);
+                job.setMessage("Lease on " + lease.workerId + " expired, requeued");
+                // Retry before newer work so requeued jobs don't starve
+                queued.addFirst(job.getId());
+            }
+            job.setWorkerId(null);
+            job.setVersion(++version);
+        }
+    }
+
+    private synchronized Map<String, Object> metrics() {
+        int running = 0;
+        int finished = 0;
+        for (RemoteJob job : jobs.values()) {
+            if (job.getStatus() == JobStatus.RUNNING) running++;
+            if (job.getStatus().isFinished()) finished++;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queued", queued.size());
+        metrics.put("running", running);
+        metrics.put("finished", finished);
+        metrics.put("workers", copyOfWorkers());
+        return metrics;
+    }
+
+    private List<WorkerStats> copyOfWorkers() {
+        List<WorkerStats> copies = new ArrayList<>(workers.size());
+        for (WorkerStats stats : workers.values()) {
+            copies.add(stats.copy());
+        }
+        return copies;
+    }
+
+    private WorkerStats worker(String workerId) {
+        WorkerStats stats = workers.computeIfAbsent(workerId, WorkerStats::new);
+        stats.setLastSeenMillis(System.currentTimeMillis());
+        return stats;
+    }
+
+    private static long sinceParameter(String query) {
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("since=")) {
+                    return Long.parseLong(param.substring("since=".length()));
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
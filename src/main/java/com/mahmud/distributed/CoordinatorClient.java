@@ -0,0 +1,277 @@
+package com.mahmud.distributed;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadProgress;
+import com.mahmud.model.JobStatus;
+import com.mahmud.service.JobQueue;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// JobQueue backed by a Coordinator: jobs are submitted over HTTP and run on whichever
+// worker leases them. The coordinator is polled for jobs changed since the last poll,
+// and those changes go through the same offer/flush path as DownloadQueue, so the UI
+// still gets at most one update event per poll.
+//
+// When the coordinator restarts (its epoch header changes) its versions start again
+// from zero and it has forgotten our jobs, so the unfinished ones are submitted again.
+public class CoordinatorClient implements JobQueue {
+    private static final long POLL_INTERVAL_MS = 500;
+
+    private final JsonHttp http;
+    private final Executor uiExecutor;
+    // Prefix for our job ids, so several clients can share a coordinator
+    private final String clientId = UUID.randomUUID().toString().substring(0, 8);
+    private final ObservableList<DownloadJob> jobs = FXCollections.observableArrayList();
+    private final Map<String, DownloadJob> jobsById = new ConcurrentHashMap<>();
+    // Cancels wait for the submit, so they can't reach the coordinator before the job does
+    private final Map<DownloadJob, CompletableFuture<Void>> submits = new ConcurrentHashMap<>();
+    private final Queue<DownloadJob> dirtyJobs = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService poller;
+    private long since;
+    private String epoch;
+    private volatile boolean connected = true;
+
+    private volatile Consumer<DownloadJob> onJobFinished = job -> { };
+    private volatile Consumer<String> onConnectionChanged = message -> { };
+
+    // token may be null for a coordinator on loopback that doesn't ask for one
+    public CoordinatorClient(String coordinatorUrl, String token) {
+        this(coordinatorUrl, token, Platform::runLater);
+    }
+
+    public CoordinatorClient(String coordinatorUrl, String token, Executor uiExecutor) {
+        this.http = new JsonHttp(coordinatorUrl, token);
+        this.uiExecutor = uiExecutor;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coordinator-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ObservableList<DownloadJob> getJobs() {
+        return jobs;
+    }
+
+    @Override
+    public void setOnJobFinished(Consumer<DownloadJob> onJobFinished) {
+        this.onJobFinished = onJobFinished != null ? onJobFinished : job -> { };
+    }
+
+    // Called with a message when the coordinator becomes unreachable and again when it's back
+    public void setOnConnectionChanged(Consumer<String> onConnectionChanged) {
+        this.onConnectionChanged = onConnectionChanged != null ? onConnectionChanged : message -> { };
+    }
+
+    @Override
+    public void submit(DownloadJob job) {
+        submitAll(List.of(job));
+    }
+
+    @Override
+    public void submitAll(List<DownloadJob> batch) {
+        jobs.addAll(batch);
+        for (DownloadJob job : batch) {
+            // The id is chosen here rather than by the coordinator, so a poll can never see
+            // the job before we know which local job it belongs to
+            String id = remoteId(job);
+            jobsById.put(id, job);
+            send(job, id);
+        }
+    }
+
+    private void send(DownloadJob job, String id) {
+        CompletableFuture<Void> submitted = http.postAsync("/jobs", RemoteJob.of(id, job))
+            .thenAccept(response -> {
+                if (response.statusCode() != 200) {
+                    throw new CompletionException(new IOException("HTTP " + response.statusCode()));
+                }
+            });
+        submits.put(job, submitted);
+        submitted.whenComplete((ignored, error) -> {
+            if (error != null) {
+                markDirty(job, job.offerFailure("Could not submit to coordinator: " + reason(error)));
+            }
+        });
+    }
+
+    @Override
+    public void cancel(DownloadJob job) {
+        job.cancel();
+        CompletableFuture<Void> submitted = submits.get(job);
+        if (submitted == null) {
+            return;
+        }
+        submitted
+            .thenCompose(ignored -> http.postAsync("/jobs/" + remoteId(job) + "/cancel", Map.of()))
+            .whenComplete((response, error) -> {
+                // A job whose submit failed is already marked failed and has nothing to cancel
+                if (submitted.isCompletedExceptionally()) {
+                    return;
+                }
+                if (error != null || response.statusCode() != 200) {
+                    String reason = error != null ? reason(error) : "HTTP " + response.statusCode();
+                    markDirty(job, job.offerMessage("Could not cancel on coordinator: " + reason));
+                }
+            });
+    }
+
+    @Override
+    public void cancelAll() {
+        for (DownloadJob job : jobs) {
+            if (!job.getPendingStatus().isFinished()) {
+                cancel(job);
+            }
+        }
+    }
+
+    @Override
+    public void clearFinished() {
+        jobs.removeIf(job -> job.getStatus().isFinished());
+        jobsById.values().removeIf(job -> job.getStatus().isFinished());
+        submits.keySet().removeIf(job -> job.getStatus().isFinished());
+    }
+
+    // Stops following the jobs; they keep running on the workers
+    @Override
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            fetchChanges();
+        } finally {
+            // Failed submits and cancels are offered from HTTP threads, so flush even
+            // when the coordinator is down
+            if (!dirtyJobs.isEmpty()) {
+                uiExecutor.execute(this::flush);
+            }
+        }
+    }
+
+    private void fetchChanges() {
+        HttpResponse<byte[]> response;
+        List<RemoteJob> changed;
+        try {
+            response = http.get("/jobs?since=" + since);
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            changed = JsonHttp.MAPPER.readValue(response.body(), new TypeReference<List<RemoteJob>>() { });
+        } catch (IOException e) {
+            if (connected) {
+                connected = false;
+                onConnectionChanged.accept("Coordinator unreachable: " + e.getMessage());
+            }
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!connected) {
+            connected = true;
+            onConnectionChanged.accept("Coordinator connection restored");
+        }
+
+        String responseEpoch = response.headers().firstValue(JsonHttp.EPOCH_HEADER).orElse(null);
+        if (!Objects.equals(responseEpoch, epoch)) {
+            boolean restarted = epoch != null;
+            epoch = responseEpoch;
+            if (restarted) {
+                // These changes were asked for with a version from the old coordinator
+                since = 0;
+                resubmit();
+                return;
+            }
+        }
+
+        for (RemoteJob remote : changed) {
+            since = Math.max(since, remote.getVersion());
+            DownloadJob job = jobsById.get(remote.getId());
+            if (job != null) {
+                apply(remote, job);
+            }
+        }
+    }
+
+    private void resubmit() {
+        onConnectionChanged.accept("Coordinator restarted, submitting unfinished jobs again");
+        jobsById.forEach((id, job) -> {
+            if (job.getPendingStatus().isFinished()) {
+                return;
+            }
+            if (job.isCancelled()) {
+                markDirty(job, job.offerStatus(JobStatus.CANCELLED));
+            } else {
+                send(job, id);
+            }
+        });
+    }
+
+    private void apply(RemoteJob remote, DownloadJob job) {
+        JobStatus status = remote.getStatus();
+        if (status == JobStatus.RUNNING || remote.getPercentage() > 0) {
+            markDirty(job, job.offerProgress(new DownloadProgress(remote.getPercentage(),
+                Objects.requireNonNullElse(remote.getSpeed(), "N/A"),
+                Objects.requireNonNullElse(remote.getEta(), "N/A"), null, null)));
+        }
+        String message = remote.getWorkerId() != null && remote.getMessage() != null
+            ? remote.getWorkerId() + ": " + remote.getMessage() : remote.getMessage();
+        if (message != null && !message.equals(job.getLatestMessage())) {
+            markDirty(job, job.offerMessage(message));
+        }
+        if (status != job.getPendingStatus()) {
+            markDirty(job, status == JobStatus.FAILED
+                ? job.offerFailure(remote.getError()) : job.offerStatus(status));
+        }
+    }
+
+    private String remoteId(DownloadJob job) {
+        return clientId + "-" + job.getId();
+    }
+
+    private static String reason(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return String.valueOf(cause.getMessage());
+    }
+
+    private void markDirty(DownloadJob job, boolean becameDirty) {
+        if (becameDirty) {
+            dirtyJobs.add(job);
+        }
+    }
+
+    private void flush() {
+        DownloadJob job;
+        while ((job = dirtyJobs.poll()) != null) {
+            JobStatus before = job.getStatus();
+            job.flush();
+            JobStatus after = job.getStatus();
+            if (after != before && after.isFinished()) {
+                onJobFinished.accept(job);
+            }
+        }
+    }
+}
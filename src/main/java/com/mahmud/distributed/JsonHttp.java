@@ -0,0 +1,62 @@
+package com.mahmud.distributed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+// The few JSON calls workers and clients make against the coordinator
+class JsonHttp {
+    static final ObjectMapper MAPPER = new ObjectMapper();
+    static final String TOKEN_HEADER = "X-Ytdl-Token";
+    static final String EPOCH_HEADER = "X-Ytdl-Epoch";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final String baseUrl;
+    private final String token;
+    private final HttpClient client = HttpClient.newBuilder()
+        .connectTimeout(TIMEOUT)
+        .build();
+
+    // token may be null for a coordinator that doesn't ask for one
+    JsonHttp(String baseUrl, String token) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.token = token;
+    }
+
+    HttpResponse<byte[]> get(String path) throws IOException, InterruptedException {
+        return client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    HttpResponse<byte[]> post(String path, Object body) throws IOException, InterruptedException {
+        return client.send(postRequest(path, body), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    CompletableFuture<HttpResponse<byte[]>> postAsync(String path, Object body) {
+        try {
+            return client.sendAsync(postRequest(path, body), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private HttpRequest postRequest(String path, Object body) throws IOException {
+        return request(path)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+            .build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT);
+        if (token != null) {
+            builder.header(TOKEN_HEADER, token);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mahmud.distributed;
+
+// A job handed to a worker. The worker owns the job until the lease expires, which it
+// prevents by heartbeating at least every leaseMillis.
+public class Lease {
+    private String leaseId;
+    private long leaseMillis;
+    private RemoteJob job;
+
+    public Lease() {
+    }
+
+    public Lease(String leaseId, long leaseMillis, RemoteJob job) {
+        this.leaseId = leaseId;
+        this.leaseMillis = leaseMillis;
+        this.job = job;
+    }
+
+    public String getLeaseId() { return leaseId; }
+    public void setLeaseId(String leaseId) { this.leaseId = leaseId; }
+    public long getLeaseMillis() { return leaseMillis; }
+    public void setLeaseMillis(long leaseMillis) { this.leaseMillis = leaseMillis; }
+    public RemoteJob getJob() { return job; }
+    public void setJob(RemoteJob job) { this.job = job; }
+}
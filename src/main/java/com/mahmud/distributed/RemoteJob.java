@@ -0,0 +1,114 @@
+package com.mahmud.distributed;
+
+import com.mahmud.model.BrowserType;
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.JobStatus;
+
+// A job as the coordinator tracks it and sends it over the wire: what to download
+// plus the latest state reported by the worker running it. Where the file goes and
+// which browser's cookies are used are the worker's own settings, never the sender's.
+public class RemoteJob {
+    private String id;
+    private String url;
+    private String formatId;
+    private String extension;
+    private String resolution;
+    private String description;
+    private boolean useCookies;
+
+    private JobStatus status = JobStatus.QUEUED;
+    private double percentage;
+    private String speed;
+    private String eta;
+    private String message;
+    private String error;
+    private String workerId;
+    private int attempts;
+    private boolean cancelRequested;
+    private long version;
+
+    public RemoteJob() {
+    }
+
+    public static RemoteJob of(String id, DownloadJob job) {
+        RemoteJob remote = new RemoteJob();
+        DownloadOption option = job.getOption();
+        remote.id = id;
+        remote.url = job.getUrl();
+        remote.formatId = option.getFormatId();
+        remote.extension = option.getExtension();
+        remote.resolution = option.getResolution();
+        remote.description = option.getDescription();
+        remote.useCookies = job.isUseCookies();
+        return remote;
+    }
+
+    // The coordinator keeps changing its jobs while responses are being written, so it
+    // sends copies taken under its lock
+    public RemoteJob copy() {
+        RemoteJob copy = new RemoteJob();
+        copy.id = id;
+        copy.url = url;
+        copy.formatId = formatId;
+        copy.extension = extension;
+        copy.resolution = resolution;
+        copy.description = description;
+        copy.useCookies = useCookies;
+        copy.status = status;
+        copy.percentage = percentage;
+        copy.speed = speed;
+        copy.eta = eta;
+        copy.message = message;
+        copy.error = error;
+        copy.workerId = workerId;
+        copy.attempts = attempts;
+        copy.cancelRequested = cancelRequested;
+        copy.version = version;
+        return copy;
+    }
+
+    // Rebuilds the job on a worker, saving into its outputDir. Cookies are only used
+    // when asked for and the worker was given a browser to take them from.
+    public DownloadJob toDownloadJob(String outputDir, BrowserType cookieBrowser) {
+        DownloadOption option = new DownloadOption(formatId, extension, resolution, null, description);
+        boolean cookies = useCookies && cookieBrowser != null;
+        return new DownloadJob(url, option, outputDir, cookies, cookies ? cookieBrowser : null);
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+    public String getFormatId() { return formatId; }
+    public void setFormatId(String formatId) { this.formatId = formatId; }
+    public String getExtension() { return extension; }
+    public void setExtension(String extension) { this.extension = extension; }
+    public String getResolution() { return resolution; }
+    public void setResolution(String resolution) { this.resolution = resolution; }
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+    public boolean isUseCookies() { return useCookies; }
+    public void setUseCookies(boolean useCookies) { this.useCookies = useCookies; }
+
+    public JobStatus getStatus() { return status; }
+    public void setStatus(JobStatus status) { this.status = status; }
+    public double getPercentage() { return percentage; }
+    public void setPercentage(double percentage) { this.percentage = percentage; }
+    public String getSpeed() { return speed; }
+    public void setSpeed(String speed) { this.speed = speed; }
+    public String getEta() { return eta; }
+    public void setEta(String eta) { this.eta = eta; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public String getWorkerId() { return workerId; }
+    public void setWorkerId(String workerId) { this.workerId = workerId; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public boolean isCancelRequested() { return cancelRequested; }
+    public void setCancelRequested(boolean cancelRequested) { this.cancelRequested = cancelRequested; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+}
@@ -0,0 +1,241 @@
+package com.mahmud.distributed;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mahmud.model.BrowserType;
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadProgress;
+import com.mahmud.model.JobStatus;
+import com.mahmud.service.AdaptiveConcurrencyController;
+import com.mahmud.service.ContentDeduplicator;
+import com.mahmud.service.DownloadQueue;
+import com.mahmud.service.DownloadService;
+import com.mahmud.util.ProcessLauncher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Headless download worker: leases jobs from a Coordinator, runs them through a local
+// DownloadQueue (so per-site AIMD limits and dedup still apply on each machine) and
+// reports progress with every heartbeat.
+//
+// Lease polling and the queue's UI updates run on one "node" thread. Heartbeats have a
+// thread of their own and go out as one asynchronous request for all leases, so slow
+// coordinator calls elsewhere can't hold them back until the leases expire.
+//
+// Files always go to this worker's own --output directory, and cookies are only used
+// from the browser given with --cookies, whatever the submitter asked for.
+//
+// Usage: java -cp <classpath> com.mahmud.distributed.WorkerNode <coordinatorUrl>
+//            [--id name] [--slots n] [--output dir] [--cookies browser]
+// The launcher and dedup settings come from the same -Dytdl.* properties as the app,
+// the coordinator's token from -Dytdl.coordinator.token.
+public class WorkerNode {
+    private static final long LEASE_POLL_MS = 500;
+    private static final TypeReference<Map<String, String>> REPLIES_TYPE = new TypeReference<>() { };
+
+    private final String workerId;
+    private final int slots;
+    private final String outputDir;
+    private final BrowserType cookieBrowser;
+    private final long heartbeatMillis;
+    private final JsonHttp http;
+    private final DownloadQueue downloadQueue;
+    private final ScheduledExecutorService node;
+    private final ScheduledExecutorService heartbeats;
+    private final Map<DownloadJob, String> leases = new ConcurrentHashMap<>();
+
+    public WorkerNode(String coordinatorUrl, String token, String workerId, int slots, String outputDir,
+                      BrowserType cookieBrowser, ProcessLauncher launcher, long heartbeatMillis) {
+        this.workerId = workerId;
+        this.slots = Math.max(1, slots);
+        this.outputDir = outputDir;
+        this.cookieBrowser = cookieBrowser;
+        this.heartbeatMillis = heartbeatMillis;
+        this.http = new JsonHttp(coordinatorUrl, token);
+        this.node = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "worker-node"));
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "worker-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.downloadQueue = new DownloadQueue(new DownloadService(launcher), this.slots, node::execute,
+            new AdaptiveConcurrencyController(Math.min(2, this.slots), this.slots));
+        downloadQueue.setOnJobFinished(this::complete);
+        downloadQueue.getConcurrencyController().setOnLimitChanged(this::log);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: WorkerNode <coordinatorUrl> [--id name] [--slots n] [--output dir]"
+                + " [--cookies browser]");
+            System.exit(2);
+        }
+        String workerId = InetAddress.getLocalHost().getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        int slots = 3;
+        String outputDir = Path.of(System.getProperty("user.home"), "Downloads").toString();
+        BrowserType cookieBrowser = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--id" -> workerId = args[i + 1];
+                case "--slots" -> slots = Integer.parseInt(args[i + 1]);
+                case "--output" -> outputDir = args[i + 1];
+                case "--cookies" -> cookieBrowser = BrowserType.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Files.createDirectories(Path.of(outputDir));
+
+        WorkerNode worker = new WorkerNode(args[0], System.getProperty("ytdl.coordinator.token"), workerId, slots,
+            outputDir, cookieBrowser, ProcessLauncher.fromSystemProperties(),
+            Long.getLong("ytdl.heartbeat.millis", 3000));
+        ContentDeduplicator deduplicator = ContentDeduplicator.fromSystemProperties();
+        if (deduplicator != null) {
+            deduplicator.setOnResult(worker::log);
+            worker.downloadQueue.setContentDeduplicator(deduplicator);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(worker::stop));
+        worker.start();
+        worker.log("started with " + slots + " slots against " + args[0] + ", saving to " + outputDir);
+    }
+
+    public void start() {
+        node.scheduleWithFixedDelay(this::pollLeases, 0, LEASE_POLL_MS, TimeUnit.MILLISECONDS);
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops taking work and kills running downloads; their leases expire on the
+    // coordinator and the jobs go to other workers
+    public void stop() {
+        heartbeats.shutdownNow();
+        node.shutdownNow();
+        downloadQueue.shutdown();
+    }
+
+    // Only asks for more work while every leased job is actually running, so a site at
+    // its AIMD limit here leaves the job for a worker that can start it now
+    private void pollLeases() {
+        try {
+            while (leases.size() < slots && downloadQueue.getRunningCount() >= leases.size()) {
+                HttpResponse<byte[]> response = http.post("/lease", Map.of("workerId", workerId));
+                if (response.statusCode() != 200) {
+                    return;
+                }
+                Lease lease = JsonHttp.MAPPER.readValue(response.body(), Lease.class);
+                DownloadJob job = lease.getJob().toDownloadJob(outputDir, cookieBrowser);
+                leases.put(job, lease.getLeaseId());
+                downloadQueue.submit(job);
+                log("leased " + lease.getJob().getId() + " " + job.getUrl());
+            }
+        } catch (IOException e) {
+            log("coordinator unreachable: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void heartbeat() {
+        Map<String, DownloadJob> jobsByLease = new ConcurrentHashMap<>();
+        List<WorkerReport> reports = new ArrayList<>();
+        leases.forEach((job, leaseId) -> {
+            // Finished jobs are reported by complete() instead
+            if (!job.getPendingStatus().isFinished()) {
+                jobsByLease.put(leaseId, job);
+                reports.add(report(job, leaseId));
+            }
+        });
+        if (reports.isEmpty()) {
+            return;
+        }
+        http.postAsync("/heartbeat", reports).whenComplete((response, error) -> {
+            if (error != null || response.statusCode() != 200) {
+                log("heartbeat failed: " + (error != null ? error.getMessage() : "HTTP " + response.statusCode()));
+                return;
+            }
+            try {
+                JsonHttp.MAPPER.readValue(response.body(), REPLIES_TYPE).forEach((leaseId, reply) -> {
+                    DownloadJob job = jobsByLease.get(leaseId);
+                    if (job == null) {
+                        return;
+                    }
+                    if (reply.equals("expired")) {
+                        // The coordinator gave the job to someone else; don't download it twice
+                        log("lease lost for " + job.getUrl() + ", cancelling");
+                        leases.remove(job);
+                        downloadQueue.cancel(job);
+                    } else if (reply.equals("cancel")) {
+                        downloadQueue.cancel(job);
+                    }
+                });
+            } catch (IOException e) {
+                log("bad heartbeat reply: " + e.getMessage());
+            }
+        });
+    }
+
+    private void complete(DownloadJob job) {
+        String leaseId = leases.remove(job);
+        if (leaseId != null) {
+            WorkerReport report = report(job, leaseId);
+            report.setStatus(job.getStatus());
+            report.setError(job.getErrorMessage());
+            report.setBytes(outputSize(job));
+            http.postAsync("/complete", report).whenComplete((response, error) -> {
+                if (error != null) {
+                    // The lease will expire and the job run again elsewhere
+                    log("could not report " + job.getUrl() + ": " + error.getMessage());
+                } else if (response.statusCode() == 410) {
+                    // Missed heartbeats: the coordinator took the job back before we finished
+                    log("lease on " + job.getUrl() + " had already expired; the job was requeued"
+                        + " and may be downloaded again");
+                } else if (response.statusCode() != 200) {
+                    log("could not report " + job.getUrl() + ": HTTP " + response.statusCode());
+                }
+            });
+            log(job.getStatus() + " " + job.getUrl());
+        }
+        downloadQueue.clearFinished();
+    }
+
+    private WorkerReport report(DownloadJob job, String leaseId) {
+        WorkerReport report = new WorkerReport();
+        report.setWorkerId(workerId);
+        report.setLeaseId(leaseId);
+        report.setStatus(job.getPendingStatus());
+        DownloadProgress progress = job.getLatestProgress();
+        if (progress != null) {
+            report.setPercentage(progress.getPercentage());
+            report.setSpeed(progress.getSpeed());
+            report.setEta(progress.getEta());
+        }
+        report.setMessage(job.getLatestMessage());
+        return report;
+    }
+
+    private static long outputSize(DownloadJob job) {
+        Path file = job.getOutputFile();
+        if (job.getStatus() != JobStatus.COMPLETED || file == null) {
+            return 0;
+        }
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void log(String message) {
+        System.out.println("[" + workerId + "] " + message);
+    }
+}
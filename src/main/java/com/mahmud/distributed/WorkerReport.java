@@ -0,0 +1,39 @@
+package com.mahmud.distributed;
+
+import com.mahmud.model.JobStatus;
+
+// Sent by a worker for one lease: as a heartbeat while the job runs, and once more
+// with the final status when it's done.
+public class WorkerReport {
+    private String workerId;
+    private String leaseId;
+    private JobStatus status;
+    private double percentage;
+    private String speed;
+    private String eta;
+    private String message;
+    private String error;
+    private long bytes;
+
+    public WorkerReport() {
+    }
+
+    public String getWorkerId() { return workerId; }
+    public void setWorkerId(String workerId) { this.workerId = workerId; }
+    public String getLeaseId() { return leaseId; }
+    public void setLeaseId(String leaseId) { this.leaseId = leaseId; }
+    public JobStatus getStatus() { return status; }
+    public void setStatus(JobStatus status) { this.status = status; }
+    public double getPercentage() { return percentage; }
+    public void setPercentage(double percentage) { this.percentage = percentage; }
+    public String getSpeed() { return speed; }
+    public void setSpeed(String speed) { this.speed = speed; }
+    public String getEta() { return eta; }
+    public void setEta(String eta) { this.eta = eta; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public long getBytes() { return bytes; }
+    public void setBytes(long bytes) { this.bytes = bytes; }
+}
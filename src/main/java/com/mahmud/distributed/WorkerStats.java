@@ -0,0 +1,54 @@
+package com.mahmud.distributed;
+
+// Per-worker counters kept by the coordinator and served from /metrics
+public class WorkerStats {
+    private String workerId;
+    private long lastSeenMillis;
+    private int activeLeases;
+    private int completed;
+    private int failed;
+    private int cancelled;
+    private int leasesExpired;
+    // Results reported after the lease had expired; the job was requeued and may run twice
+    private int lateCompletions;
+    private long bytes;
+
+    public WorkerStats() {
+    }
+
+    public WorkerStats(String workerId) {
+        this.workerId = workerId;
+    }
+
+    public WorkerStats copy() {
+        WorkerStats copy = new WorkerStats(workerId);
+        copy.lastSeenMillis = lastSeenMillis;
+        copy.activeLeases = activeLeases;
+        copy.completed = completed;
+        copy.failed = failed;
+        copy.cancelled = cancelled;
+        copy.leasesExpired = leasesExpired;
+        copy.lateCompletions = lateCompletions;
+        copy.bytes = bytes;
+        return copy;
+    }
+
+    public String getWorkerId() { return workerId; }
+    public void setWorkerId(String workerId) { this.workerId = workerId; }
+    public long getLastSeenMillis() { return lastSeenMillis; }
+    public void setLastSeenMillis(long lastSeenMillis) { this.lastSeenMillis = lastSeenMillis; }
+    public int getActiveLeases() { return activeLeases; }
+    public void setActiveLeases(int activeLeases) { this.activeLeases = activeLeases; }
+    public int getCompleted() { return completed; }
+    public void setCompleted(int completed) { this.completed = completed; }
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+    public int getCancelled() { return cancelled; }
+    public void setCancelled(int cancelled) { this.cancelled = cancelled; }
+    public int getLeasesExpired() { return leasesExpired; }
+    public void setLeasesExpired(int leasesExpired) { this.leasesExpired = leasesExpired; }
+    public int getLateCompletions() { return lateCompletions; }
+    public void setLateCompletions(int lateCompletions) { this.lateCompletions = lateCompletions; }
+    public long getBytes() { return bytes; }
+    public void setBytes(long bytes) { this.bytes = bytes; }
+}
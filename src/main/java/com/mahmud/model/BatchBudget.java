@@ -0,0 +1,76 @@
+package com.mahmud.model;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A time and/or size budget for a batch of downloads, e.g. "45m", "2GB" or "1h30m, 20GiB"
+public class BatchBudget {
+    private static final Pattern TIME_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(h|m|s)");
+    private static final Pattern SIZE_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*([kmgt]?)(i?)b");
+
+    private final Duration time;
+    private final long bytes;
+
+    public BatchBudget(Duration time, long bytes) {
+        this.time = time;
+        this.bytes = bytes;
+    }
+
+    public Duration getTime() { return time; }
+    public long getBytes() { return bytes; }
+    public boolean hasTime() { return time != null; }
+    public boolean hasBytes() { return bytes > 0; }
+
+    public static BatchBudget parse(String text) {
+        Duration time = null;
+        long bytes = 0;
+        for (String part : text.toLowerCase(Locale.ROOT).split("[,\\s]+")) {
+            if (part.isEmpty()) continue;
+            Matcher size = SIZE_PATTERN.matcher(part);
+            if (size.matches()) {
+                double base = size.group(3).isEmpty() ? 1000 : 1024;
+                int power = size.group(2).isEmpty() ? 0 : "kmgt".indexOf(size.group(2)) + 1;
+                bytes += (long) (Double.parseDouble(size.group(1)) * Math.pow(base, power));
+                continue;
+            }
+            Matcher t = TIME_PATTERN.matcher(part);
+            int end = 0;
+            while (t.find() && t.start() == end) {
+                double value = Double.parseDouble(t.group(1));
+                long seconds = (long) (value * switch (t.group(2)) {
+                    case "h" -> 3600;
+                    case "m" -> 60;
+                    default -> 1;
+                });
+                time = (time == null ? Duration.ZERO : time).plusSeconds(seconds);
+                end = t.end();
+            }
+            if (end != part.length()) {
+                throw new IllegalArgumentException("Unrecognised budget: " + part);
+            }
+        }
+        if (time == null && bytes == 0) {
+            throw new IllegalArgumentException("Budget must give a time (e.g. 45m) or a size (e.g. 2GB)");
+        }
+        return new BatchBudget(time, bytes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (time != null) {
+            // Same notation as parse accepts, e.g. "1h30m" or "1m30s"
+            long seconds = time.toSeconds();
+            if (seconds >= 3600) sb.append(seconds / 3600).append('h');
+            if (seconds % 3600 >= 60) sb.append(seconds % 3600 / 60).append('m');
+            if (seconds % 60 > 0 || seconds == 0) sb.append(seconds % 60).append('s');
+        }
+        if (bytes > 0) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(String.format("%.1f MiB", bytes / (1024.0 * 1024.0)));
+        }
+        return sb.toString();
+    }
+}
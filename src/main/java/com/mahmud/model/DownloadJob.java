@@ -0,0 +1,160 @@
+package com.mahmud.model;
+
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DownloadJob {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final long id = NEXT_ID.getAndIncrement();
+    private final String url;
+    private volatile DownloadOption option;
+    private final String downloadPath;
+    private final boolean useCookies;
+    private final BrowserType browserType;
+
+    // Observable state, only touched on the UI thread from flush()
+    private final ReadOnlyObjectWrapper<JobStatus> status = new ReadOnlyObjectWrapper<>(JobStatus.QUEUED);
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0);
+    private final ReadOnlyStringWrapper detail = new ReadOnlyStringWrapper("");
+    private final ReadOnlyStringWrapper message = new ReadOnlyStringWrapper("");
+    private final ReadOnlyStringWrapper format = new ReadOnlyStringWrapper("");
+
+    // Latest values reported by the worker thread. Workers overwrite these freely;
+    // the UI only sees whatever is current when the next flush runs.
+    private volatile JobStatus pendingStatus = JobStatus.QUEUED;
+    private volatile DownloadProgress pendingProgress;
+    private volatile String pendingMessage;
+    private volatile String errorMessage;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+    private volatile Process process;
+    private volatile Path outputFile;
+
+    public DownloadJob(String url, DownloadOption option, String downloadPath,
+                       boolean useCookies, BrowserType browserType) {
+        this.url = url;
+        this.option = option;
+        this.downloadPath = downloadPath;
+        this.useCookies = useCookies;
+        this.browserType = browserType;
+        this.format.set(option != null ? option.getDescription() : "");
+    }
+
+    public long getId() { return id; }
+    public String getUrl() { return url; }
+    public DownloadOption getOption() { return option; }
+    public String getDownloadPath() { return downloadPath; }
+    public boolean isUseCookies() { return useCookies; }
+    public BrowserType getBrowserType() { return browserType; }
+    public String getErrorMessage() { return errorMessage; }
+    // Final file written by yt-dlp, as reported in its output; null until known
+    public Path getOutputFile() { return outputFile; }
+    public void setOutputFile(Path outputFile) { this.outputFile = outputFile; }
+
+    public JobStatus getStatus() { return status.get(); }
+    public ReadOnlyObjectProperty<JobStatus> statusProperty() { return status.getReadOnlyProperty(); }
+    public ReadOnlyDoubleProperty progressProperty() { return progress.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty detailProperty() { return detail.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty messageProperty() { return message.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty formatProperty() { return format.getReadOnlyProperty(); }
+
+    // The offer* methods may be called from any thread. They return true when the job
+    // has just become dirty, i.e. the caller should schedule it for the next flush.
+    public boolean offerProgress(DownloadProgress progress) {
+        pendingProgress = progress;
+        return dirty.compareAndSet(false, true);
+    }
+
+    public boolean offerMessage(String line) {
+        pendingMessage = line;
+        return dirty.compareAndSet(false, true);
+    }
+
+    public boolean offerStatus(JobStatus newStatus) {
+        pendingStatus = newStatus;
+        return dirty.compareAndSet(false, true);
+    }
+
+    public boolean offerFailure(String error) {
+        errorMessage = error;
+        return offerStatus(JobStatus.FAILED);
+    }
+
+    // Replaces the requested option once it's been resolved, e.g. by automatic quality selection
+    public boolean offerOption(DownloadOption option) {
+        this.option = option;
+        return dirty.compareAndSet(false, true);
+    }
+
+    public JobStatus getPendingStatus() { return pendingStatus; }
+    public DownloadProgress getLatestProgress() { return pendingProgress; }
+    public String getLatestMessage() { return pendingMessage; }
+
+    // Copies the latest pending values into the observable properties. UI thread only.
+    public void flush() {
+        dirty.set(false);
+
+        DownloadProgress p = pendingProgress;
+        if (p != null) {
+            progress.set(p.getPercentage() / 100.0);
+            detail.set(String.format("%.1f%% - %s - ETA: %s",
+                p.getPercentage(), p.getSpeed(), p.getEta()));
+        }
+
+        DownloadOption o = option;
+        if (o != null) {
+            format.set(o.getDescription());
+        }
+
+        String line = pendingMessage;
+        if (line != null) {
+            message.set(line);
+        }
+
+        JobStatus s = pendingStatus;
+        status.set(s);
+        switch (s) {
+            case COMPLETED -> {
+                progress.set(1.0);
+                detail.set("Download completed");
+            }
+            case FAILED -> detail.set("Download failed: " + (errorMessage != null ? errorMessage : "Unknown error"));
+            case CANCELLED -> detail.set("Download cancelled");
+            default -> { }
+        }
+    }
+
+    public boolean isCancelled() { return cancelled; }
+
+    // Registers the running yt-dlp process so cancel() can kill it instead of waiting
+    // for the next output line.
+    public void attachProcess(Process process) {
+        this.process = process;
+        if (cancelled) {
+            process.destroy();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        Process p = process;
+        if (p != null) {
+            p.destroy();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d %s (%s)", id, url, option != null ? option.getDescription() : "");
+    }
+}
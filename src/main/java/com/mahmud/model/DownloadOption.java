@@ -1,6 +1,10 @@
 package com.mahmud.model;
 
 public class DownloadOption {
+    // Placeholder for jobs whose resolution is chosen per video by a QualityPlanner
+    public static final DownloadOption AUTO = new DownloadOption("auto", "mp4", "auto", null,
+        "Auto (video+audio, fit batch budget)");
+    
     private final String formatId;
     private final String extension;
     private final String resolution;
@@ -21,6 +25,7 @@ public class DownloadOption {
     public String getResolution() { return resolution; }
     public String getFilesize() { return filesize; }
     public String getDescription() { return description; }
+    public boolean isAuto() { return this == AUTO; }
     
     @Override
     public String toString() {
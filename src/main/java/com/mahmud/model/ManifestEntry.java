@@ -0,0 +1,28 @@
+package com.mahmud.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One distinct piece of content in a download folder's manifest: the file that holds it
+// and the other names that turned out to have the same bytes. Paths are relative to the
+// folder so the manifest survives moving the archive.
+public class ManifestEntry {
+    private long size;
+    private String path;
+    private List<String> duplicates = new ArrayList<>();
+
+    public ManifestEntry() {
+    }
+
+    public ManifestEntry(long size, String path) {
+        this.size = size;
+        this.path = path;
+    }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+    public List<String> getDuplicates() { return duplicates; }
+    public void setDuplicates(List<String> duplicates) { this.duplicates = duplicates; }
+}
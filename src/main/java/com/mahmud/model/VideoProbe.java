@@ -0,0 +1,35 @@
+package com.mahmud.model;
+
+import java.util.List;
+
+// What a yt-dlp metadata probe tells us about one video: the resolutions on offer and
+// roughly how many bytes a video+audio download at each of them would take.
+public class VideoProbe {
+    private final String title;
+    private final double durationSeconds;
+    private final List<Quality> qualities;
+
+    public VideoProbe(String title, double durationSeconds, List<Quality> qualities) {
+        this.title = title;
+        this.durationSeconds = durationSeconds;
+        this.qualities = qualities;
+    }
+
+    public String getTitle() { return title; }
+    public double getDurationSeconds() { return durationSeconds; }
+    // Sorted from highest to lowest resolution
+    public List<Quality> getQualities() { return qualities; }
+
+    public static class Quality {
+        private final int height;
+        private final long estimatedBytes;
+
+        public Quality(int height, long estimatedBytes) {
+            this.height = height;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        public int getHeight() { return height; }
+        public long getEstimatedBytes() { return estimatedBytes; }
+    }
+}
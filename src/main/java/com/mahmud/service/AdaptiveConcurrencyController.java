@@ -0,0 +1,222 @@
+package com.mahmud.service;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Per-site concurrency limits adjusted with AIMD (additive increase, multiplicative
+// decrease). Every clean completion grows a site's limit by 1/limit, i.e. roughly one
+// extra slot per limit's worth of completions. A throttling signal (a 429 / bot-check
+// line, or the site's total throughput collapsing to a fraction of what it gave us
+// before) halves the limit, at most once per cooldown so one burst of errors from
+// several jobs counts as a single event.
+//
+// Speed is judged on the sum over the site's running jobs rather than per job: on a
+// saturated link another slot lowers every job's speed without lowering the total, and
+// that must not read as throttling.
+//
+// Anything that talks to the site should hold a slot: downloads as well as probes
+// such as format listings.
+public class AdaptiveConcurrencyController {
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final long DECREASE_COOLDOWN_NANOS = 10_000_000_000L;
+    private static final double SPEED_EWMA_ALPHA = 0.2;
+    private static final double PEAK_DECAY = 0.995;
+    private static final double SLOWDOWN_RATIO = 0.5;
+    private static final int MIN_SPEED_SAMPLES = 20;
+    // A job's first samples are mostly connection setup, not what the site allows
+    private static final int WARMUP_SAMPLES = 5;
+
+    private final double initialLimit;
+    private final double maxLimit;
+    private final Map<String, SiteState> sites = new HashMap<>();
+    private volatile Consumer<String> onLimitChanged = message -> { };
+
+    public AdaptiveConcurrencyController(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.initialLimit = Math.min(this.maxLimit, Math.max(1, initialLimit));
+    }
+
+    private static final class SiteState {
+        double limit;
+        int active;
+        long lastDecreaseNanos;
+        double speedEwma;
+        double speedPeak;
+        int samplesSinceDecrease;
+        // Latest rate per running job, their sum, and how many are still warming up
+        final Map<Object, JobSpeed> jobSpeeds = new HashMap<>();
+        double totalRate;
+        int warmingUp;
+
+        SiteState(double limit) {
+            this.limit = limit;
+        }
+    }
+
+    private static final class JobSpeed {
+        double rate;
+        int samples;
+    }
+
+    // Called with a human readable description whenever a site's limit changes
+    public void setOnLimitChanged(Consumer<String> onLimitChanged) {
+        this.onLimitChanged = onLimitChanged != null ? onLimitChanged : message -> { };
+    }
+
+    // Groups URLs by the site that will throttle them
+    public static String siteOf(String url) {
+        String host;
+        try {
+            host = URI.create(url.trim()).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        if (host == null) {
+            return "unknown";
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.equals("youtu.be") || host.endsWith(".youtube.com") || host.equals("youtube.com")) {
+            return "youtube.com";
+        }
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    public synchronized boolean tryAcquire(String site) {
+        SiteState state = state(site);
+        if (state.active < (int) state.limit) {
+            state.active++;
+            return true;
+        }
+        return false;
+    }
+
+    // Releases a slot; a successful job also counts as the additive-increase signal
+    public void release(String site, boolean succeeded) {
+        String message = null;
+        synchronized (this) {
+            SiteState state = state(site);
+            state.active = Math.max(0, state.active - 1);
+            if (succeeded && state.limit < maxLimit) {
+                int before = (int) state.limit;
+                state.limit = Math.min(maxLimit, state.limit + 1.0 / state.limit);
+                if ((int) state.limit != before) {
+                    message = String.format("%s: concurrency %d -> %d", site, before, (int) state.limit);
+                }
+            }
+        }
+        if (message != null) {
+            onLimitChanged.accept(message);
+        }
+    }
+
+    public void onThrottled(String site, String reason) {
+        String message;
+        synchronized (this) {
+            message = decrease(state(site), site, reason);
+        }
+        if (message != null) {
+            onLimitChanged.accept(message);
+        }
+    }
+
+    // Feeds a speed sample for one of the site's jobs. A sustained drop of the site's
+    // total below SLOWDOWN_RATIO of the best total seen is treated like an explicit
+    // throttling signal. Call onJobStopped when the job ends.
+    public void onSpeedSample(String site, Object job, double bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        String message = null;
+        synchronized (this) {
+            SiteState state = state(site);
+            JobSpeed speed = state.jobSpeeds.get(job);
+            if (speed == null) {
+                speed = new JobSpeed();
+                state.jobSpeeds.put(job, speed);
+                state.warmingUp++;
+            }
+            state.totalRate += bytesPerSecond - speed.rate;
+            speed.rate = bytesPerSecond;
+            speed.samples++;
+            if (speed.samples == WARMUP_SAMPLES) {
+                state.warmingUp--;
+            }
+            // While a job is warming up the total is still settling; don't judge it
+            if (speed.samples <= WARMUP_SAMPLES || state.warmingUp > 0) {
+                return;
+            }
+
+            double total = state.totalRate;
+            state.speedEwma = state.speedEwma == 0 ? total
+                : state.speedEwma + SPEED_EWMA_ALPHA * (total - state.speedEwma);
+            state.speedPeak = Math.max(state.speedPeak * PEAK_DECAY, state.speedEwma);
+            state.samplesSinceDecrease++;
+            if (state.samplesSinceDecrease >= MIN_SPEED_SAMPLES
+                    && state.speedEwma < state.speedPeak * SLOWDOWN_RATIO) {
+                message = decrease(state, site, "speed dropped");
+                // Judge the next trend against what we get at the new limit
+                state.speedPeak = state.speedEwma;
+            }
+        }
+        if (message != null) {
+            onLimitChanged.accept(message);
+        }
+    }
+
+    // Removes a finished job's rate from the site total
+    public synchronized void onJobStopped(String site, Object job) {
+        SiteState state = state(site);
+        JobSpeed speed = state.jobSpeeds.remove(job);
+        if (speed == null) {
+            return;
+        }
+        if (speed.samples < WARMUP_SAMPLES) {
+            state.warmingUp--;
+        }
+        if (state.jobSpeeds.isEmpty()) {
+            state.totalRate = 0;
+            state.speedEwma = 0;
+            state.speedPeak = 0;
+            return;
+        }
+        // Fewer jobs move less in total without the site slowing down, so scale what
+        // we compare against instead of reading the drop as throttling
+        double before = state.totalRate;
+        state.totalRate -= speed.rate;
+        if (before > 0) {
+            double scale = state.totalRate / before;
+            state.speedEwma *= scale;
+            state.speedPeak *= scale;
+        }
+    }
+
+    public synchronized int getLimit(String site) {
+        return (int) state(site).limit;
+    }
+
+    public synchronized int getActive(String site) {
+        return state(site).active;
+    }
+
+    private String decrease(SiteState state, String site, String reason) {
+        long now = System.nanoTime();
+        if (state.lastDecreaseNanos != 0 && now - state.lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+            return null;
+        }
+        state.lastDecreaseNanos = now;
+        state.samplesSinceDecrease = 0;
+        int before = (int) state.limit;
+        state.limit = Math.max(1, state.limit * DECREASE_FACTOR);
+        if ((int) state.limit == before) {
+            return null;
+        }
+        return String.format("%s: concurrency %d -> %d (%s)", site, before, (int) state.limit, reason);
+    }
+
+    private SiteState state(String site) {
+        return sites.computeIfAbsent(site, s -> new SiteState(initialLimit));
+    }
+}
@@ -0,0 +1,248 @@
+package com.mahmud.service;
+
+import com.mahmud.model.ManifestEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Post-download stage: hashes finished files on a small bounded pool, records them in
+// a ContentManifest and deals with byte-identical duplicates (re-uploads, the same
+// audio saved under another title or in another playlist's folder) according to the
+// Mode.
+//
+// Files under the archive root share the single manifest kept at the root, so copies
+// in different sub-folders are found too; files outside it get one per folder. Without
+// a root every download folder has its own. The manifest is re-read under its lock for
+// every file, so several processes may share a folder or root.
+//
+// Files are hashed through memory-mapped windows so the bytes go from the page cache
+// straight into the digest without being copied through a Java buffer. A mapping lasts
+// until its buffer is collected, and Windows refuses to replace or delete a mapped file,
+// so there a file that may be linked over or deleted is read through a reused direct
+// buffer instead.
+public class ContentDeduplicator {
+    public enum Mode {
+        // Replace the duplicate with a hard link to the first copy; both names keep working
+        HARD_LINK,
+        // Remove the duplicate, keeping only the first copy
+        DELETE,
+        // Only note the duplicate in the manifest
+        RECORD_ONLY
+    }
+
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+    private static final boolean MAPPING_BLOCKS_REPLACE = File.separatorChar == '\\';
+    private static final int READ_BUFFER = 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER));
+    // Threads of this process take turns per manifest folder, across deduplicators too;
+    // the manifest's file lock only keeps other processes out
+    private static final Map<Path, Object> FOLDER_LOCKS = new ConcurrentHashMap<>();
+
+    private final Mode mode;
+    private final Path archiveRoot;
+    private final ThreadPoolExecutor pool;
+    private volatile Consumer<String> onResult = message -> { };
+
+    // archiveRoot may be null to keep one manifest per download folder
+    public ContentDeduplicator(Mode mode, int threads, Path archiveRoot) {
+        this.mode = mode;
+        this.archiveRoot = archiveRoot != null ? archiveRoot.toAbsolutePath().normalize() : null;
+        // Hashing is disk bound, so a couple of threads is plenty. When the queue is full
+        // the submitting download worker hashes the file itself, which slows new
+        // downloads instead of queueing unbounded work. After shutdown new work is
+        // rejected rather than run or dropped.
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "content-hash");
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Content deduplicator is shut down");
+                }
+                runnable.run();
+            });
+    }
+
+    // -Dytdl.dedup=record (default), link, delete or off. Returns null when off. Only
+    // link and delete touch downloaded files, so they have to be asked for.
+    // -Dytdl.dedup.root sets an archive root; by default each download folder keeps its
+    // own manifest.
+    public static ContentDeduplicator fromSystemProperties() {
+        String value = System.getProperty("ytdl.dedup", "record").toLowerCase(Locale.ROOT);
+        int threads = Integer.getInteger("ytdl.dedup.threads", 2);
+        String rootProperty = System.getProperty("ytdl.dedup.root");
+        Path root = rootProperty != null ? Path.of(rootProperty) : null;
+        switch (value) {
+            case "off": return null;
+            case "delete": return new ContentDeduplicator(Mode.DELETE, threads, root);
+            case "link": return new ContentDeduplicator(Mode.HARD_LINK, threads, root);
+            default: return new ContentDeduplicator(Mode.RECORD_ONLY, threads, root);
+        }
+    }
+
+    // Called with a one-line summary for every processed file
+    public void setOnResult(Consumer<String> onResult) {
+        this.onResult = onResult != null ? onResult : message -> { };
+    }
+
+    public CompletableFuture<String> submit(Path file) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    String message = process(file.toAbsolutePath().normalize());
+                    onResult.accept(message);
+                    return message;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public static String sha256(Path file) throws IOException {
+        return sha256(file, true);
+    }
+
+    // mapped = false reads through a direct buffer instead, leaving nothing mapped afterwards
+    public static String sha256(Path file, boolean mapped) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (mapped) {
+                long size = channel.size();
+                // A single mapping is limited to 2GB, so walk large files window by window
+                for (long position = 0; position < size; position += MAP_WINDOW) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_WINDOW, size - position));
+                    digest.update(window);
+                }
+            } else {
+                // A direct buffer is read into without an extra copy and handed to the digest as is
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private String process(Path file) throws IOException {
+        long size = Files.size(file);
+        // Only RECORD_ONLY leaves the file alone whatever the manifest says
+        String hash = sha256(file, mode == Mode.RECORD_ONLY || !MAPPING_BLOCKS_REPLACE);
+        Path directory = archiveRoot != null && file.startsWith(archiveRoot) ? archiveRoot : file.getParent();
+        // Stored with '/' so a manifest stays valid when the archive is moved between systems
+        String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+
+        // One decision per folder at a time, so two copies finishing together can't both
+        // become the original
+        synchronized (FOLDER_LOCKS.computeIfAbsent(directory, key -> new Object())) {
+            try (ContentManifest manifest = ContentManifest.open(directory)) {
+                return record(file, size, hash, name, manifest);
+            }
+        }
+    }
+
+    // Records the file in the manifest, opened and locked by the caller, and resolves it
+    // if it duplicates the recorded original
+    private String record(Path file, long size, String hash, String name, ContentManifest manifest)
+            throws IOException {
+        Path directory = manifest.getDirectory();
+        ManifestEntry entry = manifest.get(hash);
+        Path original = entry != null ? directory.resolve(entry.getPath()) : null;
+
+        if (entry == null || entry.getPath().equals(name) || !Files.exists(original)) {
+            ManifestEntry fresh = new ManifestEntry(size, name);
+            if (entry != null) {
+                fresh.getDuplicates().addAll(entry.getDuplicates());
+                fresh.getDuplicates().remove(name);
+            }
+            manifest.put(hash, fresh);
+            manifest.save();
+            return String.format("%s: new content (sha256 %s)", name, hash.substring(0, 12));
+        }
+
+        String action;
+        if (Files.isSameFile(original, file)) {
+            action = "already linked to " + entry.getPath();
+        } else if (size != entry.getSize() || Files.mismatch(original, file) != -1) {
+            // Same hash but different bytes; keep both and leave the manifest alone
+            return String.format("%s: hash matches %s but content differs, kept", name, entry.getPath());
+        } else {
+            action = resolveDuplicate(original, file, entry.getPath());
+        }
+
+        if (!entry.getDuplicates().contains(name)) {
+            entry.getDuplicates().add(name);
+            manifest.save();
+        }
+        return name + ": duplicate, " + action;
+    }
+
+    private String resolveDuplicate(Path original, Path duplicate, String originalName) throws IOException {
+        try {
+            switch (mode) {
+                case HARD_LINK -> {
+                    if (!Files.getFileStore(original).equals(Files.getFileStore(duplicate))) {
+                        return "same as " + originalName + ", left in place (different file system)";
+                    }
+                    Path tmp = duplicate.resolveSibling(duplicate.getFileName() + ".dedup-tmp");
+                    Files.deleteIfExists(tmp);
+                    Files.createLink(tmp, original);
+                    Files.move(tmp, duplicate, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return "hard-linked to " + originalName;
+                }
+                case DELETE -> {
+                    Files.delete(duplicate);
+                    return "deleted, same as " + originalName;
+                }
+                default -> {
+                    return "same as " + originalName;
+                }
+            }
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // e.g. no hard links on this file system, or the file is still open elsewhere
+            return "same as " + originalName + ", left in place (" + e.getMessage() + ")";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mahmud.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mahmud.model.ManifestEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+// SHA-256 -> content record for every finished file under one folder, stored as JSON
+// in that folder with paths relative to it. Not thread-safe.
+//
+// open() holds an exclusive lock on a lock file next to the manifest until close(), and
+// reads the manifest after taking it, so several processes (e.g. worker nodes sharing a
+// folder) each see the others' entries and never overwrite them. File locks are held
+// per process, so threads of one process must also take turns before calling open().
+public class ContentManifest implements Closeable {
+    public static final String FILE_NAME = ".ytdl-manifest.json";
+    public static final String LOCK_FILE_NAME = ".ytdl-manifest.lock";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final TypeReference<TreeMap<String, ManifestEntry>> ENTRIES_TYPE = new TypeReference<>() { };
+
+    private final Path directory;
+    private final Map<String, ManifestEntry> entries;
+    private final FileChannel lockChannel;
+
+    private ContentManifest(Path directory, Map<String, ManifestEntry> entries, FileChannel lockChannel) {
+        this.directory = directory;
+        this.entries = entries;
+        this.lockChannel = lockChannel;
+    }
+
+    // Blocks until no other process has the folder's manifest open
+    public static ContentManifest open(Path directory) throws IOException {
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lockChannel.lock();
+            Path file = directory.resolve(FILE_NAME);
+            Map<String, ManifestEntry> entries = Files.exists(file)
+                ? MAPPER.readValue(file.toFile(), ENTRIES_TYPE)
+                : new TreeMap<>();
+            return new ContentManifest(directory, entries, lockChannel);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public ManifestEntry get(String sha256) {
+        return entries.get(sha256);
+    }
+
+    public void put(String sha256, ManifestEntry entry) {
+        entries.put(sha256, entry);
+    }
+
+    // Written to a temporary file first so a crash never leaves a half-written manifest
+    public void save() throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        Path tmp = directory.resolve(FILE_NAME + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), entries);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Releases the lock; closing the channel drops it
+    @Override
+    public void close() throws IOException {
+        lockChannel.close();
+    }
+}
@@ -0,0 +1,326 @@
+package com.mahmud.service;
+
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.JobStatus;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Runs queued download jobs with bounded concurrency and batches their progress
+// updates so the UI thread sees at most one update event per flush interval,
+// no matter how many jobs are active. On top of the global limit, each site gets
+// its own adaptive limit from an AdaptiveConcurrencyController fed with the
+// throttling lines and speeds seen in the yt-dlp output.
+public class DownloadQueue implements JobQueue {
+    private static final long FLUSH_INTERVAL_MS = 100;
+
+    private final DownloadService downloadService;
+    private final Executor uiExecutor;
+    private final ObservableList<DownloadJob> jobs = FXCollections.observableArrayList();
+
+    private final AdaptiveConcurrencyController concurrencyController;
+    private final Object lock = new Object();
+    // Pending jobs per site, so a site that is at its limit doesn't block jobs for other sites
+    private final Map<String, Deque<DownloadJob>> pendingBySite = new LinkedHashMap<>();
+    private int maxConcurrent;
+    private int running;
+
+    private final Map<DownloadJob, QualityPlanner> planners = new ConcurrentHashMap<>();
+
+    private final Queue<DownloadJob> dirtyJobs = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService ticker;
+
+    private volatile Consumer<DownloadJob> onJobFinished = job -> { };
+    private volatile ContentDeduplicator contentDeduplicator;
+
+    public DownloadQueue(DownloadService downloadService, int maxConcurrent) {
+        this(downloadService, maxConcurrent, Platform::runLater);
+    }
+
+    public DownloadQueue(DownloadService downloadService, int maxConcurrent, Executor uiExecutor) {
+        this(downloadService, maxConcurrent, uiExecutor,
+            new AdaptiveConcurrencyController(Math.min(2, maxConcurrent), maxConcurrent));
+    }
+
+    public DownloadQueue(DownloadService downloadService, int maxConcurrent, Executor uiExecutor,
+                         AdaptiveConcurrencyController concurrencyController) {
+        this.downloadService = downloadService;
+        this.concurrencyController = concurrencyController;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.uiExecutor = uiExecutor;
+        this.workers = Executors.newCachedThreadPool(daemonThreads("download-worker"));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(daemonThreads("download-flush"));
+        ticker.scheduleAtFixedRate(this::scheduleFlush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ObservableList<DownloadJob> getJobs() {
+        return jobs;
+    }
+
+    @Override
+    public void setOnJobFinished(Consumer<DownloadJob> onJobFinished) {
+        this.onJobFinished = onJobFinished != null ? onJobFinished : job -> { };
+    }
+
+    // Finished files are handed to this for hashing and dedup; null disables the stage
+    public void setContentDeduplicator(ContentDeduplicator contentDeduplicator) {
+        this.contentDeduplicator = contentDeduplicator;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        synchronized (lock) {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+        }
+        dispatch();
+    }
+
+    public int getMaxConcurrent() {
+        synchronized (lock) {
+            return maxConcurrent;
+        }
+    }
+
+    public AdaptiveConcurrencyController getConcurrencyController() {
+        return concurrencyController;
+    }
+
+    public int getRunningCount() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    // Submits a batch whose resolutions are picked by the batch's planner as each job starts.
+    // Only for local downloads, since budgets are planned against this machine's throughput.
+    public void submitAll(List<DownloadJob> batch, QualityPlanner planner) {
+        for (DownloadJob job : batch) {
+            planner.register(job);
+            planners.put(job, planner);
+        }
+        submitAll(batch);
+    }
+
+    @Override
+    public void submit(DownloadJob job) {
+        submitAll(List.of(job));
+    }
+
+    @Override
+    public void submitAll(List<DownloadJob> batch) {
+        jobs.addAll(batch);
+        synchronized (lock) {
+            for (DownloadJob job : batch) {
+                pendingBySite.computeIfAbsent(AdaptiveConcurrencyController.siteOf(job.getUrl()),
+                    site -> new ArrayDeque<>()).add(job);
+            }
+        }
+        dispatch();
+    }
+
+    @Override
+    public void cancel(DownloadJob job) {
+        job.cancel();
+        boolean wasPending;
+        synchronized (lock) {
+            Deque<DownloadJob> pending = pendingBySite.get(AdaptiveConcurrencyController.siteOf(job.getUrl()));
+            wasPending = pending != null && pending.remove(job);
+        }
+        if (wasPending) {
+            cancelPending(job);
+        }
+    }
+
+    @Override
+    public void cancelAll() {
+        // Take every pending job out in one pass; removing them one by one from the
+        // per-site deques would be quadratic with thousands queued
+        List<DownloadJob> pending = new ArrayList<>();
+        synchronized (lock) {
+            for (Deque<DownloadJob> site : pendingBySite.values()) {
+                pending.addAll(site);
+            }
+            pendingBySite.clear();
+        }
+        for (DownloadJob job : pending) {
+            job.cancel();
+            cancelPending(job);
+        }
+        // What's left is running; cancelling kills the process and run() reports it
+        for (DownloadJob job : jobs) {
+            if (!job.getPendingStatus().isFinished()) {
+                job.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void clearFinished() {
+        jobs.removeIf(job -> job.getStatus().isFinished());
+    }
+
+    @Override
+    public void shutdown() {
+        cancelAll();
+        ticker.shutdownNow();
+        workers.shutdownNow();
+        ContentDeduplicator deduplicator = contentDeduplicator;
+        if (deduplicator != null) {
+            deduplicator.shutdown();
+        }
+    }
+
+    private void dispatch() {
+        synchronized (lock) {
+            Iterator<Map.Entry<String, Deque<DownloadJob>>> sites = pendingBySite.entrySet().iterator();
+            while (running < maxConcurrent && sites.hasNext()) {
+                Map.Entry<String, Deque<DownloadJob>> entry = sites.next();
+                String site = entry.getKey();
+                Deque<DownloadJob> pending = entry.getValue();
+                while (running < maxConcurrent && !pending.isEmpty()) {
+                    if (pending.peek().isCancelled()) {
+                        pending.poll();
+                        continue;
+                    }
+                    if (!concurrencyController.tryAcquire(site)) {
+                        break;
+                    }
+                    DownloadJob job = pending.poll();
+                    running++;
+                    workers.execute(() -> run(job, site));
+                }
+                if (pending.isEmpty()) {
+                    sites.remove();
+                }
+            }
+        }
+    }
+
+    private void run(DownloadJob job, String site) {
+        markDirty(job, job.offerStatus(JobStatus.RUNNING));
+        QualityPlanner planner = planners.remove(job);
+        boolean succeeded = false;
+        AtomicBoolean throttled = new AtomicBoolean();
+        try {
+            if (planner != null) {
+                // The probe runs while holding the site's slot, so it counts towards its limit
+                markDirty(job, job.offerMessage("Probing formats..."));
+                markDirty(job, job.offerOption(planner.plan(job)));
+            }
+            downloadService.download(job,
+                progress -> {
+                    concurrencyController.onSpeedSample(site, job, DownloadService.parseRate(progress.getSpeed()));
+                    if (planner != null) {
+                        planner.onProgress(job, progress);
+                    }
+                    markDirty(job, job.offerProgress(progress));
+                },
+                line -> {
+                    if (DownloadService.isThrottleSignal(line)) {
+                        throttled.set(true);
+                        concurrencyController.onThrottled(site, line);
+                    }
+                    markDirty(job, job.offerMessage(line));
+                });
+            // A job that finished despite being throttled is no reason to add more load
+            succeeded = !job.isCancelled() && !throttled.get();
+            markDirty(job, job.offerStatus(job.isCancelled() ? JobStatus.CANCELLED : JobStatus.COMPLETED));
+            if (!job.isCancelled()) {
+                postProcess(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markDirty(job, job.offerStatus(JobStatus.CANCELLED));
+        } catch (Exception e) {
+            if (job.isCancelled()) {
+                markDirty(job, job.offerStatus(JobStatus.CANCELLED));
+            } else {
+                markDirty(job, job.offerFailure(e.getMessage()));
+            }
+        } finally {
+            if (planner != null) {
+                planner.onFinished(job, job.getPendingStatus() == JobStatus.COMPLETED);
+            }
+            concurrencyController.onJobStopped(site, job);
+            concurrencyController.release(site, succeeded);
+            synchronized (lock) {
+                running--;
+            }
+            dispatch();
+        }
+    }
+
+    private void postProcess(DownloadJob job) {
+        ContentDeduplicator deduplicator = contentDeduplicator;
+        if (deduplicator == null || job.getOutputFile() == null) {
+            return;
+        }
+        markDirty(job, job.offerMessage("Hashing " + job.getOutputFile().getFileName() + "..."));
+        deduplicator.submit(job.getOutputFile()).whenComplete((message, error) ->
+            markDirty(job, job.offerMessage(error == null ? message
+                : "Hashing failed: " + (error.getCause() != null ? error.getCause().getMessage() : error.getMessage()))));
+    }
+
+    private void cancelPending(DownloadJob job) {
+        QualityPlanner planner = planners.remove(job);
+        if (planner != null) {
+            planner.forget(job);
+        }
+        markDirty(job, job.offerStatus(JobStatus.CANCELLED));
+    }
+
+    private void markDirty(DownloadJob job, boolean becameDirty) {
+        if (becameDirty) {
+            dirtyJobs.add(job);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!dirtyJobs.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            uiExecutor.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        DownloadJob job;
+        while ((job = dirtyJobs.poll()) != null) {
+            JobStatus before = job.getStatus();
+            job.flush();
+            JobStatus after = job.getStatus();
+            if (after != before && after.isFinished()) {
+                onJobFinished.accept(job);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,13 +1,16 @@
 package com.mahmud.service;
 
 import com.mahmud.model.BrowserType;
+import com.mahmud.model.DownloadJob;
 import com.mahmud.model.DownloadOption;
 import com.mahmud.model.DownloadProgress;
-import javafx.concurrent.Task;
+import com.mahmud.util.ProcessLauncher;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -15,59 +18,123 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class DownloadService {
-    private static final Pattern PROGRESS_PATTERN = 
-        Pattern.compile("download\\s+(\\d+\\.\\d+)%.*?at\\s+([\\d\\.]+\\w+/s).*?ETA\\s+(\\d+:\\d+)");
+    // e.g. "[download]  42.0% of   10.00MiB at    1.25MiB/s ETA 00:05"; the size is that of
+    // the stream being downloaded, "~" when estimated, and missing when yt-dlp doesn't know it
+    private static final Pattern PROGRESS_PATTERN = Pattern.compile("\\[download\\]\\s+(\\d+(?:\\.\\d+)?)%"
+        + "(?:\\s+of\\s+~?\\s*([\\d\\.]+[KMGT]?i?B)\\b)?.*?at\\s+([\\d\\.]+\\w+/s).*?ETA\\s+(\\d+:\\d+)");
     
-    public Task<Void> downloadVideo(String url, DownloadOption option, String downloadPath,
-                                   boolean useCookies, BrowserType browserType,
-                                   Consumer<DownloadProgress> progressCallback,
-                                   Consumer<String> statusCallback) {
-        
-        return new Task<Void>() {
-            @Override
-            protected Void call() throws Exception {
-                List<String> command = buildDownloadCommand(url, option, downloadPath, 
-                                                           useCookies, browserType);
-                
-                ProcessBuilder pb = new ProcessBuilder(command);
-                pb.redirectErrorStream(true);
-                Process process = pb.start();
-                
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(process.getInputStream()))) {
-                    
-                    String line;
-                    while ((line = reader.readLine()) != null && !isCancelled()) {
-                        final String currentLine = line;
-                        
-                        // Parse progress
-                        Matcher matcher = PROGRESS_PATTERN.matcher(line);
-                        if (matcher.find()) {
-                            double percentage = Double.parseDouble(matcher.group(1));
-                            String speed = matcher.group(2);
-                            String eta = matcher.group(3);
-                            
-                            javafx.application.Platform.runLater(() -> {
-                                progressCallback.accept(new DownloadProgress(
-                                    percentage, speed, eta, null, null));
-                            });
-                        }
-                        
-                        // Update status
-                        javafx.application.Platform.runLater(() -> {
-                            statusCallback.accept(currentLine);
-                        });
-                    }
+    // Errors and warnings yt-dlp prints when the site is rate limiting or bot-checking us,
+    // and the "Got error" line it prints before retrying a fragment after a 429. Only
+    // these prefixes count, so a title such as "How to rate limit an API" in a
+    // Destination or Merger line can't trigger it.
+    private static final Pattern THROTTLE_PATTERN = Pattern.compile(
+        "^(?:ERROR|WARNING): .*(?:HTTP Error 429|Too Many Requests|Sign in to confirm you.re not a bot)"
+        + "|^\\[download\\] Got error: .*(?:HTTP Error 429|Too Many Requests)");
+    
+    // Lines naming the file yt-dlp ends up with; the last one seen wins
+    private static final Pattern OUTPUT_FILE_PATTERN = Pattern.compile(
+        "^\\[(?:download|ExtractAudio)\\] Destination: (.+)$"
+        + "|^\\[Merger\\] Merging formats into \"(.+)\"$"
+        + "|^\\[download\\] (.+) has already been downloaded");
+    
+    private static final Pattern RATE_PATTERN = Pattern.compile("([\\d\\.]+)\\s*([KMGT]?i?B)/s");
+    private static final Pattern SIZE_PATTERN = Pattern.compile("([\\d\\.]+)\\s*([KMGT]?i?B)");
+    
+    private final ProcessLauncher launcher;
+    
+    public DownloadService() {
+        this(ProcessLauncher.fromSystemProperties());
+    }
+    
+    public DownloadService(ProcessLauncher launcher) {
+        this.launcher = launcher;
+    }
+    
+    // Runs a single download on the calling thread. Callbacks are invoked on that same
+    // thread; callers that touch the UI are expected to hand results over themselves.
+    public void download(DownloadJob job,
+                         Consumer<DownloadProgress> progressCallback,
+                         Consumer<String> statusCallback) throws IOException, InterruptedException {
+        List<String> command = buildDownloadCommand(job.getUrl(), job.getOption(), job.getDownloadPath(),
+                                                   job.isUseCookies(), job.getBrowserType());
+
+        Process process = launcher.start(command);
+        job.attachProcess(process);
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream()))) {
+
+            String line;
+            while ((line = reader.readLine()) != null && !job.isCancelled()) {
+                // Parse progress
+                Matcher matcher = PROGRESS_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    double percentage = Double.parseDouble(matcher.group(1));
+                    double total = parseSize(matcher.group(2));
+                    String speed = matcher.group(3);
+                    String eta = matcher.group(4);
+                    progressCallback.accept(new DownloadProgress(percentage, speed, eta,
+                        total >= 0 ? (long) (total * percentage / 100.0) : null,
+                        total >= 0 ? (long) total : null));
                 }
-                
-                int exitCode = process.waitFor();
-                if (exitCode != 0 && !isCancelled()) {
-                    throw new RuntimeException("Download failed with exit code: " + exitCode);
+
+                // Track the output file
+                Matcher output = OUTPUT_FILE_PATTERN.matcher(line);
+                if (output.find()) {
+                    String file = output.group(1) != null ? output.group(1)
+                        : output.group(2) != null ? output.group(2) : output.group(3);
+                    job.setOutputFile(Path.of(file));
                 }
                 
-                return null;
+                // Update status
+                statusCallback.accept(line);
+            }
+        } catch (IOException e) {
+            // The stream is closed under us when the process is destroyed on cancel
+            if (!job.isCancelled()) {
+                throw e;
             }
-        };
+        } finally {
+            if (job.isCancelled()) {
+                process.destroy();
+            }
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0 && !job.isCancelled()) {
+            throw new RuntimeException("Download failed with exit code: " + exitCode);
+        }
+    }
+    
+    public static boolean isThrottleSignal(String line) {
+        return THROTTLE_PATTERN.matcher(line).find();
+    }
+    
+    // Converts a yt-dlp speed such as "1.25MiB/s" to bytes per second, or -1 if unknown
+    public static double parseRate(String speed) {
+        if (speed == null) return -1;
+        Matcher matcher = RATE_PATTERN.matcher(speed);
+        if (!matcher.find()) return -1;
+        return toBytes(Double.parseDouble(matcher.group(1)), matcher.group(2));
+    }
+    
+    // Converts a yt-dlp size such as "10.00MiB" to bytes, or -1 if unknown
+    public static double parseSize(String size) {
+        if (size == null) return -1;
+        Matcher matcher = SIZE_PATTERN.matcher(size);
+        if (!matcher.find()) return -1;
+        return toBytes(Double.parseDouble(matcher.group(1)), matcher.group(2));
+    }
+    
+    private static double toBytes(double value, String unit) {
+        double base = unit.contains("i") ? 1024 : 1000;
+        switch (unit.charAt(0)) {
+            case 'K': return value * base;
+            case 'M': return value * base * base;
+            case 'G': return value * base * base * base;
+            case 'T': return value * base * base * base * base;
+            default: return value;
+        }
     }
     
     private List<String> buildDownloadCommand(String url, DownloadOption option, 
@@ -132,6 +199,8 @@ public class DownloadService {
     // Ensure progress lines are emitted
     command.add("--newline");
 
+    // "--" ends the options, so a URL starting with '-' can't be read as one
+    command.add("--");
     command.add(url);
         
         return command;
@@ -0,0 +1,33 @@
+package com.mahmud.service;
+
+import com.mahmud.model.DownloadJob;
+import javafx.collections.ObservableList;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// What the UI needs from something that runs download jobs: DownloadQueue runs them
+// in this process, CoordinatorClient hands them to remote workers.
+public interface JobQueue {
+
+    // Backing list for the jobs table. Only modified on the UI thread.
+    ObservableList<DownloadJob> getJobs();
+
+    // Called on the UI thread whenever a job reaches a finished state
+    void setOnJobFinished(Consumer<DownloadJob> onJobFinished);
+
+    void submit(DownloadJob job);
+
+    // Submits a batch with a single change to the jobs list, so the table handles one
+    // event instead of one per URL. UI thread only, like submit.
+    void submitAll(List<DownloadJob> batch);
+
+    void cancel(DownloadJob job);
+
+    void cancelAll();
+
+    // Drops finished jobs from the table. UI thread only.
+    void clearFinished();
+
+    void shutdown();
+}
@@ -0,0 +1,179 @@
+package com.mahmud.service;
+
+import com.mahmud.model.BatchBudget;
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.DownloadProgress;
+import com.mahmud.model.VideoProbe;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Picks a resolution for each video of a batch so the batch fits its time and/or size
+// budget. The choice is made just before each download starts, from the video's probed
+// sizes and the budget left at that moment divided over the videos not yet started.
+// For a time budget, "left" is what the batch has actually been transferring per second
+// so far, so when the batch falls behind later videos get smaller shares and are
+// downgraded. Nothing is ever skipped: when even the lowest resolution doesn't fit it
+// is used anyway.
+public class QualityPlanner {
+    // Used for time budgets until the batch has measured its own throughput
+    private static final double ASSUMED_BYTES_PER_SECOND = 1024 * 1024;
+    private static final double MIN_MEASURE_SECONDS = 5;
+
+    private final BatchBudget budget;
+    private final YtDlpService ytDlpService;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+
+    private int unplanned;
+    private long completedBytes;
+    private long transferredBytes;
+    private final Map<DownloadJob, Transfer> transfers = new HashMap<>();
+
+    public QualityPlanner(BatchBudget budget, YtDlpService ytDlpService) {
+        this(budget, ytDlpService, System::nanoTime);
+    }
+
+    // nanoClock stands in for System.nanoTime, so tests can move time along
+    public QualityPlanner(BatchBudget budget, YtDlpService ytDlpService, LongSupplier nanoClock) {
+        this.budget = budget;
+        this.ytDlpService = ytDlpService;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    public BatchBudget getBudget() {
+        return budget;
+    }
+
+    // Counts a job towards the batch; call once for every job before any is planned
+    public synchronized void register(DownloadJob job) {
+        unplanned++;
+    }
+
+    // A registered job was cancelled before it was planned
+    public synchronized void forget(DownloadJob job) {
+        unplanned = Math.max(0, unplanned - 1);
+    }
+
+    // Probes the video (on the calling thread) and returns the option to download it with
+    public DownloadOption plan(DownloadJob job) throws IOException {
+        List<VideoProbe.Quality> qualities;
+        try {
+            // Attached to the job so cancelling it kills the probe too
+            qualities = ytDlpService.probe(job.getUrl(), job.isUseCookies(), job.getBrowserType(),
+                job::attachProcess).getQualities();
+            if (qualities.isEmpty()) {
+                throw new IOException("No video formats found for " + job.getUrl());
+            }
+        } catch (IOException | RuntimeException e) {
+            // The job fails without a share; it mustn't stay counted as still to come
+            forget(job);
+            throw e;
+        }
+
+        synchronized (this) {
+            unplanned = Math.max(0, unplanned - 1);
+            long share = shareForNextJob();
+            VideoProbe.Quality chosen = qualities.get(qualities.size() - 1);
+            for (VideoProbe.Quality quality : qualities) {
+                if (quality.getEstimatedBytes() <= share) {
+                    chosen = quality;
+                    break;
+                }
+            }
+            transfers.put(job, new Transfer(chosen.getEstimatedBytes()));
+
+            int height = chosen.getHeight();
+            return new DownloadOption("best[height<=" + height + "]", "mp4", height + "p",
+                formatMiB(chosen.getEstimatedBytes()),
+                String.format("Auto %dp (%s of %s left per video)", height,
+                    formatMiB(chosen.getEstimatedBytes()), formatMiB(Math.max(0, share))));
+        }
+    }
+
+    // bestvideo+bestaudio downloads one stream after the other and yt-dlp's percentage
+    // starts again from 0 for each, so a drop in percentage means the next stream began.
+    // Finished streams are counted by their size, and a job's progress never goes back.
+    public synchronized void onProgress(DownloadJob job, DownloadProgress progress) {
+        Transfer transfer = transfers.get(job);
+        if (transfer == null) {
+            return;
+        }
+        double percentage = progress.getPercentage();
+        if (percentage < transfer.streamPercentage) {
+            transfer.finishedStreamBytes += transfer.streamBytes;
+        }
+        transfer.streamPercentage = percentage;
+        Long streamBytes = progress.getTotalBytes();
+        transfer.streamBytes = streamBytes != null ? streamBytes : 0;
+
+        // Without the stream's size, the percentage is all there is to go on
+        double fraction = streamBytes != null && transfer.estimate > 0
+            ? (transfer.finishedStreamBytes + streamBytes * percentage / 100.0) / transfer.estimate
+            : percentage / 100.0;
+        transfer.fraction = Math.min(1.0, Math.max(transfer.fraction, fraction));
+    }
+
+    public synchronized void onFinished(DownloadJob job, boolean completed) {
+        Transfer transfer = transfers.remove(job);
+        if (transfer == null) {
+            return;
+        }
+        if (completed) {
+            completedBytes += transfer.estimate;
+            transferredBytes += transfer.estimate;
+        } else {
+            transferredBytes += (long) (transfer.estimate * transfer.fraction);
+        }
+    }
+
+    // Bytes the next job may use. Budget already committed to running jobs is set aside
+    // first, the rest is split evenly over this job and the ones still waiting.
+    private long shareForNextJob() {
+        int remainingJobs = unplanned + 1;
+        long inFlight = 0;
+        long inFlightDone = 0;
+        for (Transfer transfer : transfers.values()) {
+            inFlight += transfer.estimate;
+            inFlightDone += (long) (transfer.estimate * transfer.fraction);
+        }
+
+        long share = Long.MAX_VALUE;
+        if (budget.hasBytes()) {
+            long available = budget.getBytes() - completedBytes - inFlight;
+            share = Math.min(share, available / remainingJobs);
+        }
+        if (budget.hasTime()) {
+            double elapsed = (nanoClock.getAsLong() - startNanos) / 1e9;
+            double remainingSeconds = budget.getTime().toMillis() / 1000.0 - elapsed;
+            double done = transferredBytes + inFlightDone;
+            double throughput = elapsed >= MIN_MEASURE_SECONDS && done > 0
+                ? done / elapsed : ASSUMED_BYTES_PER_SECOND;
+            double deliverable = throughput * remainingSeconds - (inFlight - inFlightDone);
+            share = Math.min(share, (long) (deliverable / remainingJobs));
+        }
+        return share;
+    }
+
+    private static String formatMiB(long bytes) {
+        return String.format("%.1fMiB", bytes / (1024.0 * 1024.0));
+    }
+
+    // A planned job: the size it was planned with and how much of it has arrived
+    private static final class Transfer {
+        private final long estimate;
+        private long finishedStreamBytes;
+        private long streamBytes;
+        private double streamPercentage;
+        private double fraction;
+
+        private Transfer(long estimate) {
+            this.estimate = estimate;
+        }
+    }
+}
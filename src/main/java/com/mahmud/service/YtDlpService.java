@@ -1,17 +1,35 @@
 package com.mahmud.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mahmud.model.BrowserType;
 import com.mahmud.model.DownloadOption;
+import com.mahmud.model.VideoProbe;
+import com.mahmud.util.ProcessLauncher;
 import com.mahmud.util.ProcessUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class YtDlpService {
     
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private final ProcessLauncher launcher;
+    
+    public YtDlpService() {
+        this(ProcessLauncher.fromSystemProperties());
+    }
+    
+    public YtDlpService(ProcessLauncher launcher) {
+        this.launcher = launcher;
+    }
+    
     // Pattern to match format lines from yt-dlp --list-formats output
     private static final Pattern FORMAT_PATTERN = Pattern.compile(
         "^(\\S+)\\s+(\\S+)\\s+([^\\s]+(?:\\s+[^\\s]+)*)\\s*$"
@@ -28,9 +46,11 @@ public class YtDlpService {
             command.add(browserType.getValue());
         }
         
+        // "--" so a URL starting with '-' can't be read as an option
+        command.add("--");
         command.add(url);
         
-        String output = ProcessUtils.executeCommand(command);
+        String output = ProcessUtils.executeCommand(launcher, command);
         return parseFormats(output);
     }
     
@@ -149,9 +169,86 @@ public class YtDlpService {
             command.add(browserType.getValue());
         }
         
+        command.add("--");
         command.add(url);
         
-        String output = ProcessUtils.executeCommand(command);
+        String output = ProcessUtils.executeCommand(launcher, command);
         return output.trim();
     }
-}
\ No newline at end of file
+    
+    // Reads the video's metadata (yt-dlp -J) and estimates the download size for each
+    // resolution the same way the download command picks formats: the best video stream
+    // at or below that height plus the best audio stream.
+    public VideoProbe probe(String url, boolean useCookies, BrowserType browserType) throws IOException {
+        return probe(url, useCookies, browserType, process -> { });
+    }
+    
+    // As above, handing the yt-dlp process to onStart first so the caller can kill it
+    public VideoProbe probe(String url, boolean useCookies, BrowserType browserType,
+                            Consumer<Process> onStart) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("yt-dlp");
+        command.add("-J");
+        command.add("--no-playlist");
+        
+        if (useCookies && browserType != null) {
+            command.add("--cookies-from-browser");
+            command.add(browserType.getValue());
+        }
+        
+        command.add("--");
+        command.add(url);
+        
+        String output = ProcessUtils.executeCommand(launcher, command, onStart);
+        // stderr is merged in, so skip any warnings printed before the JSON document
+        int start = output.indexOf("\n{");
+        String json = output.startsWith("{") ? output : start >= 0 ? output.substring(start + 1) : null;
+        if (json == null) {
+            throw new IOException("yt-dlp did not return video metadata: " + output.trim());
+        }
+        return parseProbe(MAPPER.readTree(json));
+    }
+    
+    private VideoProbe parseProbe(JsonNode info) {
+        double duration = info.path("duration").asDouble(0);
+        long bestAudio = 0;
+        // height -> largest stream at that height, split by whether it already carries audio
+        TreeMap<Integer, Long> videoOnlyByHeight = new TreeMap<>();
+        TreeMap<Integer, Long> muxedByHeight = new TreeMap<>();
+        
+        for (JsonNode format : info.path("formats")) {
+            boolean hasVideo = !"none".equals(format.path("vcodec").asText("none"));
+            boolean hasAudio = !"none".equals(format.path("acodec").asText("none"));
+            long size = estimateSize(format, duration);
+            if (size <= 0) continue;
+            
+            if (hasVideo) {
+                int height = format.path("height").asInt(0);
+                if (height <= 0) continue;
+                (hasAudio ? muxedByHeight : videoOnlyByHeight).merge(height, size, Math::max);
+            } else if (hasAudio) {
+                bestAudio = Math.max(bestAudio, size);
+            }
+        }
+        
+        // Downloads use bestvideo+bestaudio/best, so prefer a separate video stream plus audio
+        TreeMap<Integer, Long> totals = new TreeMap<>(muxedByHeight);
+        for (var entry : videoOnlyByHeight.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue() + bestAudio);
+        }
+        
+        List<VideoProbe.Quality> qualities = new ArrayList<>();
+        for (var entry : totals.descendingMap().entrySet()) {
+            qualities.add(new VideoProbe.Quality(entry.getKey(), entry.getValue()));
+        }
+        return new VideoProbe(info.path("title").asText(""), duration, qualities);
+    }
+    
+    private long estimateSize(JsonNode format, double duration) {
+        if (format.hasNonNull("filesize")) return format.get("filesize").asLong();
+        if (format.hasNonNull("filesize_approx")) return format.get("filesize_approx").asLong();
+        // tbr is in kbit/s
+        double tbr = format.path("tbr").asDouble(0);
+        return (long) (tbr * 1000 / 8 * duration);
+    }
+}
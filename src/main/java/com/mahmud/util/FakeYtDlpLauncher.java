@@ -0,0 +1,282 @@
+package com.mahmud.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Offline stand-in for yt-dlp. It understands the commands the services build
+// (--list-formats, --get-title, -J and downloads) and replays a progress stream at a
+// configured speed, writing an output file of the configured size. outputSize is the
+// size of a 1080p download; lower resolutions requested with -S res:N are scaled down
+// linearly, matching the sizes reported by -J. No network.
+//
+// A recorded transcript (e.g. captured with `yt-dlp --newline ... > log`) can be
+// replayed instead of the generated one; lines containing a percentage are paced
+// so the whole download takes outputSize / bytesPerSecond. The placeholders {url},
+// {id} and {destination} are substituted in recorded lines.
+//
+// failureRate is the share of downloads that end in an ERROR line; throttleRate the
+// share that hit an HTTP 429 part way through, which yt-dlp reports and retries, so the
+// download still completes. The latter lets the per-site AIMD limits be exercised.
+public class FakeYtDlpLauncher implements ProcessLauncher {
+    public static final long DEFAULT_BYTES_PER_SECOND = 4L * 1024 * 1024;
+    public static final long DEFAULT_OUTPUT_SIZE = 8L * 1024 * 1024;
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 100;
+
+    private static final Pattern PERCENT_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)?)%");
+    private static final Pattern RES_PATTERN = Pattern.compile("res:(\\d+)");
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    private final long bytesPerSecond;
+    private final long outputSize;
+    private final double failureRate;
+    private final double throttleRate;
+    private final long progressIntervalMillis;
+    private final List<String> transcript;
+
+    public FakeYtDlpLauncher(long bytesPerSecond, long outputSize, double failureRate,
+                             long progressIntervalMillis) {
+        this(bytesPerSecond, outputSize, failureRate, progressIntervalMillis, null);
+    }
+
+    public FakeYtDlpLauncher(long bytesPerSecond, long outputSize, double failureRate,
+                             long progressIntervalMillis, List<String> transcript) {
+        this(bytesPerSecond, outputSize, failureRate, 0, progressIntervalMillis, transcript);
+    }
+
+    public FakeYtDlpLauncher(long bytesPerSecond, long outputSize, double failureRate, double throttleRate,
+                             long progressIntervalMillis, List<String> transcript) {
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+        this.outputSize = Math.max(0, outputSize);
+        this.failureRate = failureRate;
+        this.throttleRate = throttleRate;
+        this.progressIntervalMillis = Math.max(1, progressIntervalMillis);
+        this.transcript = transcript;
+    }
+
+    // -Dytdl.fake.bytesPerSecond, -Dytdl.fake.outputSize, -Dytdl.fake.failureRate,
+    // -Dytdl.fake.throttleRate, -Dytdl.fake.progressIntervalMs and -Dytdl.fake.transcript=<file>
+    public static FakeYtDlpLauncher fromSystemProperties() {
+        List<String> transcript = null;
+        String transcriptPath = System.getProperty("ytdl.fake.transcript");
+        if (transcriptPath != null) {
+            try {
+                transcript = Files.readAllLines(Path.of(transcriptPath));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read fake yt-dlp transcript " + transcriptPath, e);
+            }
+        }
+        return new FakeYtDlpLauncher(
+            Long.getLong("ytdl.fake.bytesPerSecond", DEFAULT_BYTES_PER_SECOND),
+            Long.getLong("ytdl.fake.outputSize", DEFAULT_OUTPUT_SIZE),
+            Double.parseDouble(System.getProperty("ytdl.fake.failureRate", "0")),
+            Double.parseDouble(System.getProperty("ytdl.fake.throttleRate", "0")),
+            Long.getLong("ytdl.fake.progressIntervalMs", DEFAULT_PROGRESS_INTERVAL_MS),
+            transcript);
+    }
+
+    @Override
+    public Process start(List<String> command) throws IOException {
+        String url = command.get(command.size() - 1);
+        String id = videoId(url);
+
+        if (command.contains("--list-formats")) {
+            return FakeYtDlpProcess.ofOutput(formatTable(url, id));
+        }
+        if (command.contains("--get-title")) {
+            return FakeYtDlpProcess.ofOutput(titleOf(id) + "\n");
+        }
+        if (command.contains("-J")) {
+            return FakeYtDlpProcess.ofOutput(probeJson(id) + "\n");
+        }
+        return new FakeYtDlpProcess("fake-yt-dlp-" + id, out -> download(command, url, id, out));
+    }
+
+    private int download(List<String> command, String url, String id, PrintWriter out)
+            throws IOException, InterruptedException {
+        boolean audioOnly = command.contains("-x");
+        String ext = audioOnly ? valueAfter(command, "--audio-format", "mp3")
+                               : valueAfter(command, "--merge-output-format", "webm");
+        Path destination = destination(command, id, ext);
+        long size = sizeFor(heightRequested(command));
+
+        // Decide up front whether (and where) this attempt fails or is throttled
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double failAt = random.nextDouble() < failureRate ? random.nextDouble(0, 100) : Double.MAX_VALUE;
+        double throttleAt = random.nextDouble() < throttleRate ? random.nextDouble(0, 100) : Double.MAX_VALUE;
+
+        List<String> lines = transcript != null ? transcript : generatedTranscript(size);
+        long progressLines = lines.stream().filter(l -> PERCENT_PATTERN.matcher(l).find()).count();
+        long durationMillis = size * 1000 / bytesPerSecond;
+        long delayMillis = progressLines > 0 ? durationMillis / progressLines : 0;
+
+        // Content is derived from the video id so the same video always yields the same bytes
+        Random content = new Random(id.hashCode());
+        byte[] chunk = new byte[WRITE_CHUNK];
+        long written = 0;
+
+        if (destination != null && size > 0) {
+            Files.createDirectories(destination.toAbsolutePath().getParent());
+        }
+        try (OutputStream file = destination != null && size > 0
+                ? Files.newOutputStream(destination) : OutputStream.nullOutputStream()) {
+            for (String template : lines) {
+                String line = template
+                    .replace("{url}", url)
+                    .replace("{id}", id)
+                    .replace("{destination}", String.valueOf(destination));
+                Matcher matcher = PERCENT_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    double percentage = Double.parseDouble(matcher.group(1));
+                    if (percentage >= failAt) {
+                        out.println("ERROR: unable to download video data: HTTP Error 403: Forbidden");
+                        return 1;
+                    }
+                    if (percentage >= throttleAt) {
+                        out.println("[download] Got error: HTTP Error 429: Too Many Requests. Retrying (1/10)...");
+                        throttleAt = Double.MAX_VALUE;
+                    }
+                    Thread.sleep(delayMillis);
+                    long target = Math.min(size, (long) (size * percentage / 100.0));
+                    while (written < target) {
+                        int n = (int) Math.min(chunk.length, target - written);
+                        content.nextBytes(chunk);
+                        file.write(chunk, 0, n);
+                        written += n;
+                    }
+                }
+                out.println(line);
+                if (out.checkError()) {
+                    // Reader went away or we were destroyed mid-write
+                    return 1;
+                }
+            }
+        }
+
+        if (audioOnly) {
+            out.println("[ExtractAudio] Destination: " + destination);
+        } else if (command.contains("--merge-output-format")) {
+            out.println("[Merger] Merging formats into \"" + destination + "\"");
+        }
+        return 0;
+    }
+
+    private List<String> generatedTranscript(long size) {
+        List<String> lines = new ArrayList<>();
+        lines.add("[youtube] Extracting URL: {url}");
+        lines.add("[youtube] {id}: Downloading webpage");
+        lines.add("[info] {id}: Downloading 1 format(s): 22");
+        lines.add("[download] Destination: {destination}");
+
+        long durationMillis = size * 1000 / bytesPerSecond;
+        long steps = Math.max(1, durationMillis / progressIntervalMillis);
+        String total = formatSize(size);
+        String speed = formatSize(bytesPerSecond) + "/s";
+        for (long i = 1; i <= steps; i++) {
+            double percentage = 100.0 * i / steps;
+            long etaSeconds = (durationMillis - durationMillis * i / steps) / 1000;
+            lines.add(String.format(Locale.ROOT, "[download] %5.1f%% of %10s at %10s ETA %02d:%02d",
+                percentage, total, speed, etaSeconds / 60, etaSeconds % 60));
+        }
+        lines.add(String.format(Locale.ROOT, "[download] 100%% of %10s in %02d:%02d:%02d at %s", total,
+            durationMillis / 3_600_000, durationMillis / 60_000 % 60, durationMillis / 1000 % 60, speed));
+        return lines;
+    }
+
+    private static int heightRequested(List<String> command) {
+        String sort = valueAfter(command, "-S", "");
+        Matcher matcher = RES_PATTERN.matcher(sort);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1080;
+    }
+
+    private long sizeFor(int height) {
+        return outputSize * Math.min(height, 1080) / 1080;
+    }
+
+    private String probeJson(String id) {
+        StringBuilder formats = new StringBuilder();
+        formats.append(String.format(Locale.ROOT,
+            "{\"format_id\":\"140\",\"ext\":\"m4a\",\"vcodec\":\"none\",\"acodec\":\"mp4a.40.2\",\"filesize\":%d}",
+            sizeFor(1080) / 20));
+        int[] heights = {360, 480, 720, 1080};
+        String[] ids = {"134", "135", "136", "137"};
+        for (int i = 0; i < heights.length; i++) {
+            formats.append(String.format(Locale.ROOT,
+                ",{\"format_id\":\"%s\",\"ext\":\"mp4\",\"height\":%d,\"vcodec\":\"avc1\",\"acodec\":\"none\",\"filesize\":%d}",
+                ids[i], heights[i], sizeFor(heights[i]) - sizeFor(1080) / 20));
+        }
+        double duration = (double) sizeFor(1080) / bytesPerSecond;
+        return String.format(Locale.ROOT, "{\"id\":\"%s\",\"title\":\"%s\",\"duration\":%.1f,\"formats\":[%s]}",
+            id, titleOf(id), duration, formats);
+    }
+
+    private static Path destination(List<String> command, String id, String ext) {
+        String template = valueAfter(command, "-o", null);
+        if (template == null) {
+            return null;
+        }
+        return Path.of(template
+            .replace("%(title)s", titleOf(id))
+            .replace("%(id)s", id)
+            .replace("%(ext)s", ext));
+    }
+
+    private static String valueAfter(List<String> command, String flag, String fallback) {
+        int idx = command.indexOf(flag);
+        return idx >= 0 && idx + 1 < command.size() ? command.get(idx + 1) : fallback;
+    }
+
+    private static String videoId(String url) {
+        String id = url;
+        int v = url.indexOf("v=");
+        if (v >= 0) {
+            id = url.substring(v + 2);
+            int amp = id.indexOf('&');
+            if (amp >= 0) {
+                id = id.substring(0, amp);
+            }
+        } else if (url.lastIndexOf('/') >= 0) {
+            id = url.substring(url.lastIndexOf('/') + 1);
+        }
+        id = id.replaceAll("[^A-Za-z0-9_-]", "_");
+        return id.isEmpty() ? "video" : id;
+    }
+
+    private static String titleOf(String id) {
+        return "Fake video " + id;
+    }
+
+    private static String formatTable(String url, String id) {
+        return "[youtube] Extracting URL: " + url + "\n"
+            + "[info] Available formats for " + id + ":\n"
+            + "format code  extension  resolution note\n"
+            + "140          m4a        audio only tiny  129k 3.05MiB\n"
+            + "251          webm       audio only tiny  135k 3.21MiB\n"
+            + "134          mp4        640x360    360p  276k 6.53MiB\n"
+            + "135          mp4        854x480    480p  512k 12.10MiB\n"
+            + "136          mp4        1280x720   720p 1100k 25.90MiB\n"
+            + "137          mp4        1920x1080  1080p 2200k 51.80MiB\n"
+            + "18           mp4        640x360    360p  420k 9.94MiB (best)\n";
+    }
+
+    static String formatSize(long bytes) {
+        String[] units = {"B", "KiB", "MiB", "GiB", "TiB"};
+        double value = bytes;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.2f%s", value, units[unit]);
+    }
+}
@@ -0,0 +1,99 @@
+package com.mahmud.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// An in-JVM Process whose stdout is produced by a Body running on its own thread.
+// destroy() interrupts the body, which closes stdout so readers see EOF right away.
+class FakeYtDlpProcess extends Process {
+    private static final int EXIT_DESTROYED = 143;
+
+    interface Body {
+        int run(PrintWriter out) throws IOException, InterruptedException;
+    }
+
+    private final PipedInputStream stdout;
+    private final CountDownLatch exited = new CountDownLatch(1);
+    private final Thread thread;
+    private volatile int exitCode;
+    private volatile boolean destroyed;
+
+    FakeYtDlpProcess(String name, Body body) throws IOException {
+        PipedOutputStream sink = new PipedOutputStream();
+        stdout = new PipedInputStream(sink, 64 * 1024);
+        thread = new Thread(() -> {
+            int code = 1;
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), true)) {
+                code = body.run(out);
+            } catch (InterruptedException | IOException e) {
+                code = 1;
+            } finally {
+                exitCode = destroyed ? EXIT_DESTROYED : code;
+                exited.countDown();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static FakeYtDlpProcess ofOutput(String output) throws IOException {
+        return new FakeYtDlpProcess("fake-yt-dlp", out -> {
+            out.print(output);
+            return 0;
+        });
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        // stderr is always merged into stdout, like redirectErrorStream(true)
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        exited.await();
+        return exitCode;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return exited.await(timeout, unit);
+    }
+
+    @Override
+    public int exitValue() {
+        if (exited.getCount() > 0) {
+            throw new IllegalThreadStateException("process hasn't exited");
+        }
+        return exitCode;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return exited.getCount() > 0;
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        thread.interrupt();
+    }
+}
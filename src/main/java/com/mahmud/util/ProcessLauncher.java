@@ -0,0 +1,27 @@
+package com.mahmud.util;
+
+import java.io.IOException;
+import java.util.List;
+
+// Starts the external commands (yt-dlp) the services depend on. Swapping the
+// launcher lets the app and the load tests run against an in-JVM fake.
+public interface ProcessLauncher {
+
+    Process start(List<String> command) throws IOException;
+
+    static ProcessLauncher system() {
+        return command -> {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            return pb.start();
+        };
+    }
+
+    // -Dytdl.launcher=fake selects the offline stand-in, see FakeYtDlpLauncher
+    static ProcessLauncher fromSystemProperties() {
+        if ("fake".equalsIgnoreCase(System.getProperty("ytdl.launcher"))) {
+            return FakeYtDlpLauncher.fromSystemProperties();
+        }
+        return system();
+    }
+}
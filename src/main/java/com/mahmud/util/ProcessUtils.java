@@ -4,13 +4,23 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class ProcessUtils {
     
     public static String executeCommand(List<String> command) throws IOException {
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
+        return executeCommand(ProcessLauncher.system(), command);
+    }
+    
+    public static String executeCommand(ProcessLauncher launcher, List<String> command) throws IOException {
+        return executeCommand(launcher, command, process -> { });
+    }
+    
+    // onStart gets the process before its output is read, e.g. so it can be killed on cancel
+    public static String executeCommand(ProcessLauncher launcher, List<String> command,
+                                        Consumer<Process> onStart) throws IOException {
+        Process process = launcher.start(command);
+        onStart.accept(process);
         
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(
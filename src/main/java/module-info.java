@@ -2,9 +2,12 @@ module com.mahmud {
     requires javafx.controls;
     requires javafx.fxml;
     requires com.fasterxml.jackson.databind;
+    requires java.net.http;
+    requires jdk.httpserver;
 
     opens com.mahmud.controller to javafx.fxml;
-    opens com.mahmud.model to javafx.fxml;
+    opens com.mahmud.model to javafx.fxml, com.fasterxml.jackson.databind;
+    opens com.mahmud.distributed to com.fasterxml.jackson.databind;
 
     exports com.mahmud;
 }
@@ -0,0 +1,139 @@
+package com.mahmud.bench;
+
+import com.mahmud.service.ContentDeduplicator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Hashing throughput of ContentDeduplicator.sha256, memory-mapped (the default) and
+// with channel reads into a direct buffer (used where the file may be replaced on
+// Windows), against a plain buffered stream read, on a single multi-GB file and on
+// several files in parallel.
+// The files are freshly written, so numbers are mostly from the page cache; pass
+// existing files from the archive disk for cold-read figures.
+//
+// Usage: java -cp target/test-classes:<classpath> com.mahmud.bench.HashBenchmark [sizeGiB] [threads]
+//        java -cp <classpath> com.mahmud.bench.HashBenchmark --files <file> ...
+public class HashBenchmark {
+    private static final int BLOCK = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--files")) {
+            for (int i = 1; i < args.length; i++) {
+                benchmarkFile(Path.of(args[i]));
+            }
+            return;
+        }
+
+        double sizeGiB = args.length > 0 ? Double.parseDouble(args[0]) : 4;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        long size = (long) (sizeGiB * 1024 * 1024 * 1024);
+
+        Path dir = Files.createTempDirectory("ytdl-hashbench");
+        try {
+            Path big = dir.resolve("big.bin");
+            writeFile(big, size, 1);
+            benchmarkFile(big);
+            Files.delete(big);
+
+            List<Path> parts = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Path part = dir.resolve("part" + i + ".bin");
+                writeFile(part, size / threads, i + 2);
+                parts.add(part);
+            }
+            benchmarkParallel(parts, size, threads);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void benchmarkFile(Path file) throws Exception {
+        long size = Files.size(file);
+        System.out.printf("%s (%.2f GiB)%n", file.getFileName(), size / (1024.0 * 1024 * 1024));
+        for (int run = 1; run <= 2; run++) {
+            long start = System.nanoTime();
+            ContentDeduplicator.sha256(file, true);
+            report("  mmap    run " + run, size, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ContentDeduplicator.sha256(file, false);
+            report("  channel run " + run, size, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            streamSha256(file);
+            report("  stream  run " + run, size, System.nanoTime() - start);
+        }
+    }
+
+    private static void benchmarkParallel(List<Path> files, long totalSize, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (boolean mapped : new boolean[] {true, false}) {
+                long start = System.nanoTime();
+                List<Future<String>> hashes = new ArrayList<>();
+                for (Path file : files) {
+                    hashes.add(pool.submit(() -> ContentDeduplicator.sha256(file, mapped)));
+                }
+                for (Future<String> hash : hashes) {
+                    hash.get();
+                }
+                report(String.format("%d files on %d threads (%s)", files.size(), threads,
+                    mapped ? "mmap" : "channel"), totalSize, System.nanoTime() - start);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String streamSha256(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[BLOCK];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Random-looking content without paying for a full random stream: one random block,
+    // with a counter stamped into each copy so no two blocks are equal
+    private static void writeFile(Path file, long size, long seed) throws IOException {
+        byte[] block = new byte[BLOCK];
+        new Random(seed).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long written = 0;
+            for (long counter = 0; written < size; counter++) {
+                for (int i = 0; i < 8; i++) {
+                    block[i] = (byte) (counter >>> (8 * i));
+                }
+                int n = (int) Math.min(block.length, size - written);
+                out.write(block, 0, n);
+                written += n;
+            }
+        }
+    }
+
+    private static void report(String label, long bytes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-32s %8.2f s %10.1f MiB/s%n", label, seconds, bytes / (1024.0 * 1024) / seconds);
+    }
+}
@@ -0,0 +1,332 @@
+package com.mahmud.bench;
+
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.DownloadProgress;
+import com.mahmud.model.JobStatus;
+import com.mahmud.service.AdaptiveConcurrencyController;
+import com.mahmud.service.DownloadQueue;
+import com.mahmud.service.DownloadService;
+import com.mahmud.util.FakeYtDlpLauncher;
+import com.mahmud.util.ProcessLauncher;
+import javafx.collections.ListChangeListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Offline load test for DownloadQueue, driven by FakeYtDlpLauncher. For each
+// concurrency level it measures queue throughput, UI event rate (and how many raw
+// progress updates each UI event coalesces), heap per queued job and cancel latency,
+// taken as the time from cancel() until the job's download call returns with its
+// process gone (not when the UI hears about it, which waits for the next flush).
+// A final run queues a large batch (5000 jobs by default) and checks the time spent
+// on the UI thread by the submit burst, per flush, and by Cancel All, against a 60 fps frame. This covers
+// the queue's share of a frame only; the table's own rendering needs a real screen.
+//
+// Usage: java -cp target/test-classes:<classpath> com.mahmud.bench.LoadTest [concurrency ...]
+// Defaults to 1 10 100 1000. Tunables: -Dloadtest.outputSize, -Dloadtest.bytesPerSecond,
+// -Dloadtest.progressIntervalMs, -Dloadtest.failureRate, -Dloadtest.jobsPerSlot,
+// -Dloadtest.frameJobs, -Dloadtest.frameConcurrency, -Dloadtest.timeoutSeconds
+public class LoadTest {
+    private static final long OUTPUT_SIZE = Long.getLong("loadtest.outputSize", 128 * 1024);
+    private static final long BYTES_PER_SECOND = Long.getLong("loadtest.bytesPerSecond", 128 * 1024);
+    private static final long PROGRESS_INTERVAL_MS = Long.getLong("loadtest.progressIntervalMs", 20);
+    private static final double FAILURE_RATE = Double.parseDouble(System.getProperty("loadtest.failureRate", "0.05"));
+    private static final int JOBS_PER_SLOT = Integer.getInteger("loadtest.jobsPerSlot", 2);
+    private static final int FRAME_JOBS = Integer.getInteger("loadtest.frameJobs", 5000);
+    private static final int FRAME_CONCURRENCY = Integer.getInteger("loadtest.frameConcurrency", 100);
+    private static final double FRAME_MILLIS = 1000.0 / 60;
+    // Per level, so a stuck queue ends the run instead of hanging it
+    private static final long TIMEOUT_SECONDS = Long.getLong("loadtest.timeoutSeconds", 300);
+
+    private static final DownloadOption OPTION =
+        new DownloadOption("best[height<=360]", "mp4", "360p", null, "360p (video+audio)");
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] {1, 10, 100, 1000};
+
+        System.out.printf("%6s %6s %6s %9s %11s %13s %9s %15s %12s%n",
+            "conc", "jobs", "failed", "jobs/s", "uiEvents/s", "updates/event", "KiB/job",
+            "cancel p50/p99", "slots freed");
+        for (int concurrency : levels) {
+            Path dir = Files.createTempDirectory("ytdl-loadtest");
+            try {
+                runLevel(concurrency, dir);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("ytdl-loadtest");
+        try {
+            runFrameBudget(dir);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void runLevel(int concurrency, Path dir) throws Exception {
+        // Throughput, UI event rate and memory
+        int jobCount = concurrency * JOBS_PER_SLOT;
+        UiThread ui = new UiThread();
+        CountingDownloadService service = new CountingDownloadService(
+            new FakeYtDlpLauncher(BYTES_PER_SECOND, OUTPUT_SIZE, FAILURE_RATE, PROGRESS_INTERVAL_MS));
+        // Fixed limit: measure the queue itself, not how fast AIMD ramps up
+        DownloadQueue queue = new DownloadQueue(service, concurrency, ui,
+            new AdaptiveConcurrencyController(concurrency, concurrency));
+        CountDownLatch finished = new CountDownLatch(jobCount);
+        AtomicLong failed = new AtomicLong();
+        queue.setOnJobFinished(job -> {
+            if (job.getStatus() == JobStatus.FAILED) {
+                failed.incrementAndGet();
+            }
+            finished.countDown();
+        });
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < jobCount; i++) {
+            queue.submit(new DownloadJob("https://www.youtube.com/watch?v=load" + i, OPTION,
+                dir.toString(), false, null));
+        }
+        waitUntil(() -> queue.getRunningCount() >= concurrency, 5_000);
+        long heapPerJob = Math.max(0, usedHeap() - heapBefore) / jobCount;
+
+        boolean done = finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long uiEvents = ui.events.get();
+        queue.shutdown();
+        ui.shutdown();
+        if (!done) {
+            System.out.printf("%6d %6d timed out after %d s with %d jobs unfinished%n",
+                concurrency, jobCount, TIMEOUT_SECONDS, finished.getCount());
+            return;
+        }
+
+        // Cancel latency: fill every slot with a long download, then cancel them all
+        UiThread cancelUi = new UiThread();
+        StopTimingDownloadService cancelService = new StopTimingDownloadService(
+            new FakeYtDlpLauncher(1024, 60 * 1024, 0, 100));
+        DownloadQueue cancelQueue = new DownloadQueue(cancelService, concurrency, cancelUi,
+            new AdaptiveConcurrencyController(concurrency, concurrency));
+        Map<DownloadJob, Long> cancelledAt = new ConcurrentHashMap<>();
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            DownloadJob job = new DownloadJob("https://www.youtube.com/watch?v=cancel" + i, OPTION,
+                dir.toString(), false, null);
+            jobs.add(job);
+            cancelQueue.submit(job);
+        }
+        waitUntil(() -> jobs.stream().allMatch(j -> j.getPendingStatus() == JobStatus.RUNNING), 10_000);
+        Thread.sleep(200);
+
+        long cancelStart = System.nanoTime();
+        for (DownloadJob job : jobs) {
+            cancelledAt.put(job, System.nanoTime());
+            cancelQueue.cancel(job);
+        }
+        waitUntil(() -> cancelQueue.getRunningCount() == 0, 10_000);
+        double slotsFreedMs = (System.nanoTime() - cancelStart) / 1e6;
+        waitUntil(() -> cancelService.stoppedAt.size() == jobs.size(), 10_000);
+        cancelQueue.shutdown();
+        cancelUi.shutdown();
+
+        List<Long> latencies = new ArrayList<>();
+        cancelService.stoppedAt.forEach((job, stopped) -> latencies.add(stopped - cancelledAt.get(job)));
+        latencies.sort(Comparator.naturalOrder());
+        System.out.printf("%6d %6d %6d %9.1f %11.1f %13.1f %9.1f %7.1f/%-7.1f %9.1f ms%n",
+            concurrency, jobCount, failed.get(), jobCount / seconds, uiEvents / seconds,
+            uiEvents > 0 ? (double) service.updates.get() / uiEvents : 0,
+            heapPerJob / 1024.0, percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99),
+            slotsFreedMs);
+    }
+
+    // Steady state with a table-sized batch: how long each flush keeps the UI thread busy
+    // while FRAME_CONCURRENCY jobs report progress, then how long Cancel All takes
+    private static void runFrameBudget(Path dir) throws Exception {
+        UiThread ui = new UiThread();
+        DownloadQueue queue = new DownloadQueue(new DownloadService(
+            new FakeYtDlpLauncher(BYTES_PER_SECOND, BYTES_PER_SECOND * 20, 0, PROGRESS_INTERVAL_MS)),
+            FRAME_CONCURRENCY, ui, new AdaptiveConcurrencyController(FRAME_CONCURRENCY, FRAME_CONCURRENCY));
+        // The table listens to the jobs list; count its change events like it would see them
+        AtomicLong listChanges = new AtomicLong();
+        queue.getJobs().addListener((ListChangeListener<DownloadJob>) change -> listChanges.incrementAndGet());
+        List<DownloadJob> batch = new ArrayList<>(FRAME_JOBS);
+        for (int i = 0; i < FRAME_JOBS; i++) {
+            batch.add(new DownloadJob("https://www.youtube.com/watch?v=frame" + i, OPTION,
+                dir.toString(), false, null));
+        }
+
+        // The submit burst runs on the UI thread, as it does when Download is clicked
+        CountDownLatch submitted = new CountDownLatch(1);
+        AtomicLong submitNanos = new AtomicLong();
+        ui.execute(() -> {
+            long start = System.nanoTime();
+            queue.submitAll(batch);
+            submitNanos.set(System.nanoTime() - start);
+            submitted.countDown();
+        });
+        if (!submitted.await(30, TimeUnit.SECONDS)) {
+            queue.shutdown();
+            ui.shutdown();
+            System.out.printf("%nFrame budget: submitting %d jobs did not finish within 30 s%n", FRAME_JOBS);
+            return;
+        }
+        waitUntil(() -> queue.getRunningCount() >= FRAME_CONCURRENCY, 10_000);
+        // Steady state only from here; the burst is reported on its own
+        ui.drainDurations();
+        Thread.sleep(5_000);
+        List<Long> flushes = ui.drainDurations();
+
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicLong cancelAllNanos = new AtomicLong();
+        ui.execute(() -> {
+            long start = System.nanoTime();
+            queue.cancelAll();
+            cancelAllNanos.set(System.nanoTime() - start);
+            cancelled.countDown();
+        });
+        boolean done = cancelled.await(30, TimeUnit.SECONDS);
+        queue.shutdown();
+        ui.shutdown();
+        if (!done) {
+            System.out.printf("%nFrame budget: Cancel All did not run within 30 s%n");
+            return;
+        }
+
+        flushes.sort(Comparator.naturalOrder());
+        long overBudget = flushes.stream().filter(nanos -> nanos / 1e6 > FRAME_MILLIS).count();
+        System.out.printf("%nFrame budget, %d jobs queued, %d running: submit %.2f ms (%d list changes); "
+                + "%d flushes, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d over %.1f ms; Cancel All %.2f ms%n",
+            FRAME_JOBS, FRAME_CONCURRENCY, submitNanos.get() / 1e6, listChanges.get(), flushes.size(),
+            percentileMillis(flushes, 0.50), percentileMillis(flushes, 0.99), percentileMillis(flushes, 1.0),
+            overBudget, FRAME_MILLIS, cancelAllNanos.get() / 1e6);
+    }
+
+    // Stands in for the JavaFX application thread, counts runLater calls and times them
+    private static final class UiThread implements Executor {
+        private final ExecutorService thread = Executors.newSingleThreadExecutor();
+        private final AtomicLong events = new AtomicLong();
+        private final List<Long> durations = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            events.incrementAndGet();
+            thread.execute(() -> {
+                long start = System.nanoTime();
+                command.run();
+                long elapsed = System.nanoTime() - start;
+                synchronized (durations) {
+                    durations.add(elapsed);
+                }
+            });
+        }
+
+        List<Long> drainDurations() {
+            synchronized (durations) {
+                List<Long> drained = new ArrayList<>(durations);
+                durations.clear();
+                return drained;
+            }
+        }
+
+        void shutdown() {
+            thread.shutdownNow();
+        }
+    }
+
+    // Counts raw progress/status callbacks so we can tell how much the queue coalesces
+    private static final class CountingDownloadService extends DownloadService {
+        private final AtomicLong updates = new AtomicLong();
+
+        CountingDownloadService(ProcessLauncher launcher) {
+            super(launcher);
+        }
+
+        @Override
+        public void download(DownloadJob job, Consumer<DownloadProgress> progressCallback,
+                             Consumer<String> statusCallback) throws IOException, InterruptedException {
+            super.download(job,
+                progress -> {
+                    updates.incrementAndGet();
+                    progressCallback.accept(progress);
+                },
+                line -> {
+                    updates.incrementAndGet();
+                    statusCallback.accept(line);
+                });
+        }
+    }
+
+    // Records when each download call returns, i.e. when the worker thread has seen its
+    // process exit and is about to free the slot
+    private static final class StopTimingDownloadService extends DownloadService {
+        private final Map<DownloadJob, Long> stoppedAt = new ConcurrentHashMap<>();
+
+        StopTimingDownloadService(ProcessLauncher launcher) {
+            super(launcher);
+        }
+
+        @Override
+        public void download(DownloadJob job, Consumer<DownloadProgress> progressCallback,
+                             Consumer<String> statusCallback) throws IOException, InterruptedException {
+            try {
+                super.download(job, progressCallback, statusCallback);
+            } finally {
+                stoppedAt.put(job, System.nanoTime());
+            }
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private static void waitUntil(Condition condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.met() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double percentileMillis(List<Long> sortedNanos, double percentile) {
+        if (sortedNanos.isEmpty()) {
+            return 0;
+        }
+        int idx = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, idx)) / 1e6;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.mahmud.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.distributed.Coordinator;
+import com.mahmud.distributed.CoordinatorClient;
+import com.mahmud.distributed.WorkerNode;
+import com.mahmud.distributed.WorkerStats;
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.JobStatus;
+import com.mahmud.service.ContentManifest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Runs a coordinator in this JVM and a few WorkerNode JVMs on this machine, all
+// downloading through FakeYtDlpLauncher, then submits a batch through
+// CoordinatorClient. Partway through one worker is killed, so its leases have to
+// expire and its jobs finish on the others. The workers save to their own sub-folders
+// but share one content manifest at the top, so they also exercise its file lock.
+//
+// Usage: java -cp target/test-classes:<classpath> com.mahmud.bench.LocalCluster [workers] [jobs] [slots]
+// Defaults to 3 workers, 30 jobs and 2 slots per worker. -Dytdl.fake.* properties are
+// passed on to the workers.
+public class LocalCluster {
+    private static final long LEASE_MILLIS = 2000;
+    private static final long HEARTBEAT_MILLIS = 500;
+    private static final DownloadOption OPTION =
+        new DownloadOption("best[height<=360]", "mp4", "360p", null, "360p (video+audio)");
+
+    public static void main(String[] args) throws Exception {
+        int workerCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int jobCount = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int slots = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        Path dir = Files.createTempDirectory("ytdl-cluster");
+        String token = UUID.randomUUID().toString();
+        Coordinator coordinator = new Coordinator("127.0.0.1", 0, LEASE_MILLIS, token);
+        coordinator.start();
+        String url = "http://127.0.0.1:" + coordinator.getPort();
+        System.out.printf("Coordinator on %s, %d workers x %d slots, %d jobs, working in %s%n",
+            url, workerCount, slots, jobCount, dir);
+
+        List<Process> workers = new ArrayList<>();
+        CoordinatorClient client = null;
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(startWorker(url, token, "worker-" + i, slots, dir));
+            }
+
+            // Direct UI executor: the client's poll thread applies updates itself
+            client = new CoordinatorClient(url, token, Runnable::run);
+            CountDownLatch finished = new CountDownLatch(jobCount);
+            client.setOnJobFinished(job -> finished.countDown());
+            long start = System.nanoTime();
+            List<DownloadJob> jobs = new ArrayList<>();
+            for (int i = 0; i < jobCount; i++) {
+                DownloadJob job = new DownloadJob("https://www.youtube.com/watch?v=cluster" + i, OPTION,
+                    dir.toString(), false, null);
+                jobs.add(job);
+                client.submit(job);
+            }
+
+            // Kill a worker once a quarter of the batch is done, mid-download for its other jobs
+            while (workerCount > 1 && finished.getCount() > jobCount * 3L / 4) {
+                Thread.sleep(50);
+            }
+            if (workerCount > 1) {
+                workers.get(0).destroyForcibly();
+                System.out.printf("Killed worker-0 after %.1f s%n", (System.nanoTime() - start) / 1e9);
+            }
+
+            boolean done = finished.await(5, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Map<JobStatus, Integer> statuses = new EnumMap<>(JobStatus.class);
+            for (DownloadJob job : jobs) {
+                statuses.merge(job.getPendingStatus(), 1, Integer::sum);
+            }
+            System.out.printf("%s in %.1f s (%.2f jobs/s): %s%n",
+                done ? "Finished" : "Timed out", seconds, jobCount / seconds, statuses);
+            System.out.printf("%-10s %9s %7s %10s %8s %5s %10s%n",
+                "worker", "completed", "failed", "cancelled", "expired", "late", "MiB");
+            for (WorkerStats stats : coordinator.getWorkerStats()) {
+                System.out.printf("%-10s %9d %7d %10d %8d %5d %10.1f%n", stats.getWorkerId(), stats.getCompleted(),
+                    stats.getFailed(), stats.getCancelled(), stats.getLeasesExpired(), stats.getLateCompletions(),
+                    stats.getBytes() / (1024.0 * 1024));
+            }
+            printManifest(dir, statuses.getOrDefault(JobStatus.COMPLETED, 0));
+        } finally {
+            if (client != null) {
+                client.shutdown();
+            }
+            for (Process worker : workers) {
+                worker.destroyForcibly();
+                worker.waitFor();
+            }
+            coordinator.stop();
+            deleteRecursively(dir);
+        }
+    }
+
+    // Same JVM and class or module path as this one
+    private static Process startWorker(String url, String token, String id, int slots, Path dir) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-Dytdl.launcher=fake");
+        command.add("-Dytdl.dedup=record");
+        command.add("-Dytdl.dedup.root=" + dir);
+        command.add("-Dytdl.coordinator.token=" + token);
+        command.add("-Dytdl.heartbeat.millis=" + HEARTBEAT_MILLIS);
+        System.getProperties().stringPropertyNames().stream()
+            .filter(name -> name.startsWith("ytdl.fake."))
+            .forEach(name -> command.add("-D" + name + "=" + System.getProperty(name)));
+
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.addAll(List.of("-p", modulePath, "-m", "com.mahmud/" + WorkerNode.class.getName()));
+        } else {
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), WorkerNode.class.getName()));
+        }
+        command.addAll(List.of(url, "--id", id, "--slots", String.valueOf(slots),
+            "--output", dir.resolve(id).toString()));
+
+        return new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(dir.resolve(id + ".log").toFile())
+            .start();
+    }
+
+    // Every completed job should be recorded once, whichever worker ran it. Files are
+    // hashed after the job reports completion, so give the last ones a moment; the killed
+    // worker's last files may never have been hashed.
+    private static void printManifest(Path dir, int expected) throws IOException, InterruptedException {
+        Path file = dir.resolve(ContentManifest.FILE_NAME);
+        JsonNode entries = null;
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            entries = Files.exists(file) ? new ObjectMapper().readTree(file.toFile()) : null;
+            if (entries != null && entries.size() >= expected) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        if (entries == null) {
+            System.out.println("No content manifest written");
+            return;
+        }
+        int duplicates = 0;
+        for (JsonNode entry : entries) {
+            duplicates += entry.path("duplicates").size();
+        }
+        System.out.printf("Shared manifest: %d of %d completed files recorded, %d duplicates%n",
+            entries.size(), expected, duplicates);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
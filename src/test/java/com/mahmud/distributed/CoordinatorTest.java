@@ -0,0 +1,288 @@
+package com.mahmud.distributed;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mahmud.model.JobStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoordinatorTest {
+    private static final long LEASE_MILLIS = 300;
+    private static final String TOKEN = "test-token";
+    private static final TypeReference<Map<String, String>> REPLIES_TYPE = new TypeReference<>() { };
+    private static final TypeReference<List<RemoteJob>> JOBS_TYPE = new TypeReference<>() { };
+
+    private Coordinator coordinator;
+    private JsonHttp http;
+
+    @BeforeEach
+    void start() throws Exception {
+        start(LEASE_MILLIS);
+    }
+
+    private void start(long leaseMillis) throws Exception {
+        coordinator = new Coordinator("127.0.0.1", 0, leaseMillis, TOKEN);
+        coordinator.start();
+        http = new JsonHttp("http://127.0.0.1:" + coordinator.getPort(), TOKEN);
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.stop();
+    }
+
+    @Test
+    void expiredLeaseIsRequeuedForAnotherWorker() throws Exception {
+        submit("job-1");
+        Lease first = lease("worker-a");
+        assertEquals("job-1", first.getJob().getId());
+
+        // worker-a goes quiet; once its lease expires worker-b gets the same job
+        Lease second = waitForLease("worker-b");
+        assertNotNull(second, "job was not requeued");
+        assertEquals("job-1", second.getJob().getId());
+        assertEquals(2, second.getJob().getAttempts());
+
+        // worker-a comes back too late: told to drop the job, and its result is refused
+        assertEquals(Map.of(first.getLeaseId(), "expired"), heartbeat("worker-a", first.getLeaseId()));
+        assertEquals(410, complete("worker-a", first.getLeaseId(), JobStatus.COMPLETED).statusCode());
+        assertEquals(200, complete("worker-b", second.getLeaseId(), JobStatus.COMPLETED).statusCode());
+
+        RemoteJob job = job("job-1");
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        WorkerStats workerA = coordinator.getWorkerStats().get(0);
+        assertEquals("worker-a", workerA.getWorkerId());
+        assertEquals(1, workerA.getLeasesExpired());
+        assertEquals(1, workerA.getLateCompletions());
+        assertEquals(0, workerA.getCompleted());
+    }
+
+    @Test
+    void heartbeatsKeepLeaseAlive() throws Exception {
+        submit("job-1");
+        Lease lease = lease("worker-a");
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(LEASE_MILLIS / 3);
+            assertEquals(Map.of(lease.getLeaseId(), "ok"), heartbeat("worker-a", lease.getLeaseId()));
+        }
+        assertNull(lease("worker-b"));
+        assertEquals(JobStatus.RUNNING, job("job-1").getStatus());
+    }
+
+    @Test
+    void jobFailsAfterRepeatedLeaseLoss() throws Exception {
+        submit("job-1");
+        assertNotNull(lease("worker-a"));
+        assertNotNull(waitForLease("worker-b"));
+        assertNotNull(waitForLease("worker-c"));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (job("job-1").getStatus() == JobStatus.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        RemoteJob job = job("job-1");
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("Worker lost 3 times", job.getError());
+        assertNull(lease("worker-d"));
+    }
+
+    @Test
+    void cancelReachesWorkerWithNextHeartbeat() throws Exception {
+        submit("job-1");
+        Lease lease = lease("worker-a");
+
+        assertEquals(200, http.post("/jobs/job-1/cancel", Map.of()).statusCode());
+
+        assertEquals(Map.of(lease.getLeaseId(), "cancel"), heartbeat("worker-a", lease.getLeaseId()));
+        assertEquals(200, complete("worker-a", lease.getLeaseId(), JobStatus.CANCELLED).statusCode());
+        assertEquals(JobStatus.CANCELLED, job("job-1").getStatus());
+    }
+
+    @Test
+    void cancelOfQueuedJobTakesItOffTheQueue() throws Exception {
+        submit("job-1");
+
+        assertEquals(200, http.post("/jobs/job-1/cancel", Map.of()).statusCode());
+
+        assertEquals(JobStatus.CANCELLED, job("job-1").getStatus());
+        assertNull(lease("worker-a"));
+    }
+
+    @Test
+    void rejectsRequestsWithoutTheToken() throws Exception {
+        JsonHttp anonymous = new JsonHttp("http://127.0.0.1:" + coordinator.getPort(), null);
+        JsonHttp wrongToken = new JsonHttp("http://127.0.0.1:" + coordinator.getPort(), "guess");
+
+        assertEquals(401, anonymous.get("/jobs?since=0").statusCode());
+        assertEquals(401, wrongToken.post("/lease", Map.of("workerId", "intruder")).statusCode());
+    }
+
+    @Test
+    void rejectsUrlsThatAreNotWebPages() throws Exception {
+        assertEquals(400, http.post("/jobs", remoteJob("a", "file:///etc/passwd")).statusCode());
+        assertEquals(400, http.post("/jobs", remoteJob("b", "--exec=touch /tmp/x")).statusCode());
+        assertEquals(200, http.post("/jobs", remoteJob("c", "https://www.youtube.com/watch?v=c")).statusCode());
+    }
+
+    @Test
+    void listsOnlyJobsChangedSinceAVersion() throws Exception {
+        submit("job-1");
+        submit("job-2");
+        long version = job("job-2").getVersion();
+        lease("worker-a");
+
+        List<RemoteJob> changed = JsonHttp.MAPPER.readValue(http.get("/jobs?since=" + version).body(), JOBS_TYPE);
+        assertEquals(1, changed.size());
+        assertEquals("job-1", changed.get(0).getId());
+        assertEquals(JobStatus.RUNNING, changed.get(0).getStatus());
+    }
+
+    @Test
+    void submitIsIdempotent() throws Exception {
+        submit("job-1");
+        submit("job-1");
+
+        assertNotNull(lease("worker-a"));
+        assertNull(lease("worker-b"));
+    }
+
+    @Test
+    void pollsMissNoChangeWhileWorkersReport() throws Exception {
+        // Long leases: this is about what polls see, not about expiry
+        coordinator.stop();
+        start(60_000);
+        int count = 30;
+        List<Lease> leases = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            submit("job-" + i);
+        }
+        for (int i = 0; i < count; i++) {
+            leases.add(lease("worker-a"));
+        }
+
+        // A worker heartbeating and completing its jobs while a client polls the way
+        // CoordinatorClient does, only asking for what changed after the last version seen
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        Future<?> reporting = worker.submit(() -> {
+            for (int round = 0; round < 20; round++) {
+                List<WorkerReport> reports = new ArrayList<>();
+                for (Lease lease : leases) {
+                    WorkerReport report = report("worker-a", lease.getLeaseId(), JobStatus.RUNNING);
+                    report.setPercentage(round * 5);
+                    reports.add(report);
+                }
+                assertEquals(200, http.post("/heartbeat", reports).statusCode());
+                // A worker /metrics hasn't listed before
+                heartbeat("worker-" + round, "unknown-lease");
+            }
+            for (Lease lease : leases) {
+                assertEquals(200, complete("worker-a", lease.getLeaseId(), JobStatus.COMPLETED).statusCode());
+            }
+            return null;
+        });
+        Map<String, JobStatus> seen = new HashMap<>();
+        long since = 0;
+        try {
+            while (!reporting.isDone()) {
+                since = poll(since, seen);
+                assertEquals(200, http.get("/metrics").statusCode());
+            }
+            reporting.get();
+        } finally {
+            worker.shutdownNow();
+        }
+        poll(since, seen);
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(JobStatus.COMPLETED, seen.get("job-" + i), "job-" + i);
+        }
+    }
+
+    @Test
+    void workerStatsAreSnapshots() throws Exception {
+        submit("job-1");
+        Lease lease = lease("worker-a");
+        List<WorkerStats> before = coordinator.getWorkerStats();
+
+        assertEquals(200, complete("worker-a", lease.getLeaseId(), JobStatus.COMPLETED).statusCode());
+
+        assertEquals(0, before.get(0).getCompleted());
+        assertEquals(1, coordinator.getWorkerStats().get(0).getCompleted());
+    }
+
+    private long poll(long since, Map<String, JobStatus> seen) throws Exception {
+        List<RemoteJob> changed = JsonHttp.MAPPER.readValue(http.get("/jobs?since=" + since).body(), JOBS_TYPE);
+        for (RemoteJob job : changed) {
+            since = Math.max(since, job.getVersion());
+            seen.put(job.getId(), job.getStatus());
+        }
+        return since;
+    }
+
+    private void submit(String id) throws Exception {
+        HttpResponse<byte[]> response = http.post("/jobs", remoteJob(id, "https://www.youtube.com/watch?v=" + id));
+        assertEquals(200, response.statusCode());
+    }
+
+    private static RemoteJob remoteJob(String id, String url) {
+        RemoteJob job = new RemoteJob();
+        job.setId(id);
+        job.setUrl(url);
+        return job;
+    }
+
+    // null when nothing is queued
+    private Lease lease(String workerId) throws Exception {
+        HttpResponse<byte[]> response = http.post("/lease", Map.of("workerId", workerId));
+        return response.statusCode() == 200 ? JsonHttp.MAPPER.readValue(response.body(), Lease.class) : null;
+    }
+
+    private Lease waitForLease(String workerId) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        Lease lease = lease(workerId);
+        while (lease == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            lease = lease(workerId);
+        }
+        return lease;
+    }
+
+    private Map<String, String> heartbeat(String workerId, String leaseId) throws Exception {
+        HttpResponse<byte[]> response = http.post("/heartbeat",
+            List.of(report(workerId, leaseId, JobStatus.RUNNING)));
+        assertEquals(200, response.statusCode());
+        return JsonHttp.MAPPER.readValue(response.body(), REPLIES_TYPE);
+    }
+
+    private HttpResponse<byte[]> complete(String workerId, String leaseId, JobStatus status) throws Exception {
+        return http.post("/complete", report(workerId, leaseId, status));
+    }
+
+    private static WorkerReport report(String workerId, String leaseId, JobStatus status) {
+        WorkerReport report = new WorkerReport();
+        report.setWorkerId(workerId);
+        report.setLeaseId(leaseId);
+        report.setStatus(status);
+        return report;
+    }
+
+    private RemoteJob job(String id) throws Exception {
+        List<RemoteJob> jobs = JsonHttp.MAPPER.readValue(http.get("/jobs?since=0").body(), JOBS_TYPE);
+        return jobs.stream().filter(job -> job.getId().equals(id)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,58 @@
+package com.mahmud.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchBudgetTest {
+
+    @Test
+    void parsesTime() {
+        assertEquals(Duration.ofMinutes(45), BatchBudget.parse("45m").getTime());
+        assertEquals(Duration.ofMinutes(90), BatchBudget.parse("1h30m").getTime());
+        assertEquals(Duration.ofMinutes(90), BatchBudget.parse("1.5h").getTime());
+        assertEquals(Duration.ofSeconds(90), BatchBudget.parse("1m 30s").getTime());
+        assertFalse(BatchBudget.parse("45m").hasBytes());
+    }
+
+    @Test
+    void parsesDecimalAndBinarySizes() {
+        assertEquals(2_000_000_000L, BatchBudget.parse("2GB").getBytes());
+        assertEquals(20L * 1024 * 1024 * 1024, BatchBudget.parse("20GiB").getBytes());
+        assertEquals(1536L * 1024, BatchBudget.parse("1.5MiB").getBytes());
+        assertEquals(500, BatchBudget.parse("500b").getBytes());
+        assertNull(BatchBudget.parse("2GB").getTime());
+    }
+
+    @Test
+    void parsesTimeAndSizeTogether() {
+        BatchBudget budget = BatchBudget.parse("1h30m, 20GiB");
+
+        assertTrue(budget.hasTime());
+        assertTrue(budget.hasBytes());
+        assertEquals(Duration.ofMinutes(90), budget.getTime());
+        assertEquals(20L * 1024 * 1024 * 1024, budget.getBytes());
+    }
+
+    @Test
+    void rejectsWhatItCannotRead() {
+        assertThrows(IllegalArgumentException.class, () -> BatchBudget.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> BatchBudget.parse("fast"));
+        assertThrows(IllegalArgumentException.class, () -> BatchBudget.parse("45 minutes"));
+        assertThrows(IllegalArgumentException.class, () -> BatchBudget.parse("10m2GB"));
+    }
+
+    @Test
+    void printsInTheNotationItParses() {
+        assertEquals("1h30m", BatchBudget.parse("90m").toString());
+        assertEquals("1m30s", BatchBudget.parse("90s").toString());
+        assertEquals("45m, 2048.0 MiB", BatchBudget.parse("45m 2GiB").toString());
+        assertEquals(Duration.ofSeconds(5430), BatchBudget.parse(BatchBudget.parse("1h30m30s").toString()).getTime());
+    }
+}
@@ -0,0 +1,144 @@
+package com.mahmud.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyControllerTest {
+    private static final String SITE = "youtube.com";
+    private static final double MB = 1024 * 1024;
+
+    private final List<String> changes = new ArrayList<>();
+
+    @Test
+    void acquiresUpToTheLimit() {
+        AdaptiveConcurrencyController controller = controller(2, 8);
+
+        assertTrue(controller.tryAcquire(SITE));
+        assertTrue(controller.tryAcquire(SITE));
+        assertFalse(controller.tryAcquire(SITE));
+        // Other sites have their own limit
+        assertTrue(controller.tryAcquire("vimeo.com"));
+        assertEquals(2, controller.getActive(SITE));
+    }
+
+    @Test
+    void cleanCompletionsIncreaseAdditively() {
+        AdaptiveConcurrencyController controller = controller(2, 3);
+
+        // 1/limit per success: 2 -> 2.5 -> 2.9 -> 3.2
+        controller.release(SITE, true);
+        controller.release(SITE, true);
+        assertEquals(2, controller.getLimit(SITE));
+        controller.release(SITE, true);
+        assertEquals(3, controller.getLimit(SITE));
+        for (int i = 0; i < 10; i++) {
+            controller.release(SITE, true);
+        }
+        assertEquals(3, controller.getLimit(SITE));
+        controller.release(SITE, false);
+        assertEquals(List.of("youtube.com: concurrency 2 -> 3"), changes);
+    }
+
+    @Test
+    void throttlingHalvesOncePerCooldown() {
+        AdaptiveConcurrencyController controller = controller(8, 8);
+
+        controller.onThrottled(SITE, "HTTP Error 429");
+        assertEquals(4, controller.getLimit(SITE));
+        // The same burst seen by another job
+        controller.onThrottled(SITE, "HTTP Error 429");
+        assertEquals(4, controller.getLimit(SITE));
+        assertEquals(List.of("youtube.com: concurrency 8 -> 4 (HTTP Error 429)"), changes);
+    }
+
+    @Test
+    void sharingASaturatedLinkIsNotThrottling() {
+        AdaptiveConcurrencyController controller = controller(4, 8);
+        Object first = new Object();
+        Object second = new Object();
+
+        feed(controller, 40, 8 * MB, first);
+        // A second job halves each job's speed, the site total stays the same
+        for (int i = 0; i < 40; i++) {
+            controller.onSpeedSample(SITE, first, 4 * MB);
+            controller.onSpeedSample(SITE, second, 4 * MB);
+        }
+
+        assertEquals(4, controller.getLimit(SITE));
+        assertTrue(changes.isEmpty(), changes.toString());
+    }
+
+    @Test
+    void collapsingSiteTotalIsThrottling() {
+        AdaptiveConcurrencyController controller = controller(4, 8);
+        Object first = new Object();
+        Object second = new Object();
+
+        for (int i = 0; i < 30; i++) {
+            controller.onSpeedSample(SITE, first, 4 * MB);
+            controller.onSpeedSample(SITE, second, 4 * MB);
+        }
+        for (int i = 0; i < 20; i++) {
+            controller.onSpeedSample(SITE, first, 0.5 * MB);
+            controller.onSpeedSample(SITE, second, 0.5 * MB);
+        }
+
+        assertEquals(2, controller.getLimit(SITE));
+        assertEquals(List.of("youtube.com: concurrency 4 -> 2 (speed dropped)"), changes);
+    }
+
+    @Test
+    void finishedJobsDoNotLowerTheSiteTotal() {
+        AdaptiveConcurrencyController controller = controller(4, 8);
+        Object first = new Object();
+        Object second = new Object();
+
+        for (int i = 0; i < 30; i++) {
+            controller.onSpeedSample(SITE, first, 4 * MB);
+            controller.onSpeedSample(SITE, second, 4 * MB);
+        }
+        controller.onJobStopped(SITE, second);
+        feed(controller, 40, 4 * MB, first);
+
+        assertEquals(4, controller.getLimit(SITE));
+    }
+
+    @Test
+    void firstSamplesOfAJobAreIgnored() {
+        AdaptiveConcurrencyController controller = controller(4, 8);
+        Object job = new Object();
+
+        // A burst while the connection ramps up must not become the peak
+        feed(controller, 5, 100 * MB, job);
+        feed(controller, 40, 8 * MB, job);
+
+        assertEquals(4, controller.getLimit(SITE));
+    }
+
+    @Test
+    void groupsUrlsBySite() {
+        assertEquals("youtube.com", AdaptiveConcurrencyController.siteOf("https://www.youtube.com/watch?v=a"));
+        assertEquals("youtube.com", AdaptiveConcurrencyController.siteOf("https://youtu.be/a"));
+        assertEquals("youtube.com", AdaptiveConcurrencyController.siteOf("https://m.youtube.com/watch?v=a"));
+        assertEquals("vimeo.com", AdaptiveConcurrencyController.siteOf("https://www.vimeo.com/1"));
+        assertEquals("unknown", AdaptiveConcurrencyController.siteOf("not a url"));
+    }
+
+    private AdaptiveConcurrencyController controller(int initialLimit, int maxLimit) {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(initialLimit, maxLimit);
+        controller.setOnLimitChanged(changes::add);
+        return controller;
+    }
+
+    private static void feed(AdaptiveConcurrencyController controller, int samples, double rate, Object job) {
+        for (int i = 0; i < samples; i++) {
+            controller.onSpeedSample(SITE, job, rate);
+        }
+    }
+}
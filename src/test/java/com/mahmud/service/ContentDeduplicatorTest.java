@@ -0,0 +1,164 @@
+package com.mahmud.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentDeduplicatorTest {
+    @TempDir
+    Path root;
+
+    private final List<ContentDeduplicator> deduplicators = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        deduplicators.forEach(ContentDeduplicator::shutdown);
+    }
+
+    @Test
+    void hashesLikeSha256() throws Exception {
+        Path file = Files.writeString(root.resolve("abc.txt"), "abc", StandardCharsets.US_ASCII);
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+            ContentDeduplicator.sha256(file));
+    }
+
+    @Test
+    void mappedAndReadHashesAgree() throws Exception {
+        // Larger than the read buffer, and not a multiple of it
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(11).nextBytes(content);
+        Path file = Files.write(root.resolve("big.bin"), content);
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        assertEquals(expected, ContentDeduplicator.sha256(file, true));
+        assertEquals(expected, ContentDeduplicator.sha256(file, false));
+    }
+
+    @Test
+    void hardLinksDuplicateInSameFolder() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.HARD_LINK, root);
+        Path original = write(root.resolve("song.mp3"), 1);
+        Path copy = write(root.resolve("song (1).mp3"), 1);
+
+        assertTrue(process(deduplicator, original).startsWith("song.mp3: new content"));
+        assertEquals("song (1).mp3: duplicate, hard-linked to song.mp3", process(deduplicator, copy));
+        assertTrue(Files.isSameFile(original, copy));
+        assertTrue(Files.readString(root.resolve(ContentManifest.FILE_NAME)).contains("song (1).mp3"));
+    }
+
+    @Test
+    void findsDuplicatesAcrossFoldersUnderTheRoot() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.HARD_LINK, root);
+        Path original = write(root.resolve("A/song.mp3"), 2);
+        Path copy = write(root.resolve("B/song copy.mp3"), 2);
+
+        process(deduplicator, original);
+        assertEquals("B/song copy.mp3: duplicate, hard-linked to A/song.mp3", process(deduplicator, copy));
+        assertTrue(Files.isSameFile(original, copy));
+    }
+
+    @Test
+    void keepsOneManifestPerFolderWithoutARoot() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.HARD_LINK, null);
+        Path first = write(root.resolve("A/song.mp3"), 3);
+        Path second = write(root.resolve("B/song.mp3"), 3);
+
+        process(deduplicator, first);
+        assertTrue(process(deduplicator, second).startsWith("song.mp3: new content"));
+        assertFalse(Files.isSameFile(first, second));
+    }
+
+    @Test
+    void deletesDuplicate() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.DELETE, root);
+        Path original = write(root.resolve("song.mp3"), 4);
+        Path copy = write(root.resolve("again.mp3"), 4);
+
+        process(deduplicator, original);
+        assertEquals("again.mp3: duplicate, deleted, same as song.mp3", process(deduplicator, copy));
+        assertTrue(Files.exists(original));
+        assertFalse(Files.exists(copy));
+    }
+
+    @Test
+    void onlyRecordsDuplicate() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.RECORD_ONLY, root);
+        Path original = write(root.resolve("song.mp3"), 5);
+        Path copy = write(root.resolve("again.mp3"), 5);
+
+        process(deduplicator, original);
+        assertEquals("again.mp3: duplicate, same as song.mp3", process(deduplicator, copy));
+        assertFalse(Files.isSameFile(original, copy));
+    }
+
+    @Test
+    void differentContentIsNotADuplicate() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.DELETE, root);
+        Path first = write(root.resolve("one.mp3"), 6);
+        Path second = write(root.resolve("two.mp3"), 7);
+
+        process(deduplicator, first);
+        assertTrue(process(deduplicator, second).startsWith("two.mp3: new content"));
+        assertTrue(Files.exists(second));
+    }
+
+    @Test
+    void processesSharingAFolderKeepEachOthersEntries() throws Exception {
+        // Two deduplicators stand in for two worker processes saving to the same folder
+        ContentDeduplicator first = deduplicator(ContentDeduplicator.Mode.RECORD_ONLY, root);
+        ContentDeduplicator second = deduplicator(ContentDeduplicator.Mode.RECORD_ONLY, root);
+
+        process(first, write(root.resolve("one.mp3"), 9));
+        process(second, write(root.resolve("two.mp3"), 10));
+
+        assertEquals("again.mp3: duplicate, same as two.mp3", process(first, write(root.resolve("again.mp3"), 10)));
+        String manifest = Files.readString(root.resolve(ContentManifest.FILE_NAME));
+        assertTrue(manifest.contains("one.mp3") && manifest.contains("two.mp3"), manifest);
+    }
+
+    @Test
+    void rejectsWorkAfterShutdown() throws Exception {
+        ContentDeduplicator deduplicator = deduplicator(ContentDeduplicator.Mode.HARD_LINK, root);
+        deduplicator.shutdown();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> deduplicator.submit(write(root.resolve("late.mp3"), 8)).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    private ContentDeduplicator deduplicator(ContentDeduplicator.Mode mode, Path archiveRoot) {
+        ContentDeduplicator deduplicator = new ContentDeduplicator(mode, 2, archiveRoot);
+        deduplicators.add(deduplicator);
+        return deduplicator;
+    }
+
+    private static String process(ContentDeduplicator deduplicator, Path file) throws Exception {
+        return deduplicator.submit(file).get(10, TimeUnit.SECONDS);
+    }
+
+    // Same seed, same bytes
+    private static Path write(Path file, long seed) throws Exception {
+        byte[] content = new byte[256 * 1024];
+        new Random(seed).nextBytes(content);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content);
+    }
+}
@@ -0,0 +1,209 @@
+package com.mahmud.service;
+
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.JobStatus;
+import com.mahmud.util.FakeYtDlpLauncher;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadQueueTest {
+    private static final DownloadOption BEST = new DownloadOption("best", "mp4", "1080p", null, "Best quality");
+    private static final long OUTPUT_SIZE = 256 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private final List<DownloadQueue> queues = new ArrayList<>();
+    private final BlockingQueue<DownloadJob> finished = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void shutdownQueues() {
+        queues.forEach(DownloadQueue::shutdown);
+    }
+
+    @Test
+    void completesJobAndRecordsOutputFile() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(64 * OUTPUT_SIZE, OUTPUT_SIZE, 0, 5), 2);
+        DownloadJob job = job("done");
+        queue.submit(job);
+
+        assertSame(job, finished.poll(10, TimeUnit.SECONDS));
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        assertEquals(1.0, job.progressProperty().get(), 0);
+        assertEquals(dir.resolve("Fake video done.mp4").toString(), job.getOutputFile().toString());
+        assertEquals(OUTPUT_SIZE, Files.size(job.getOutputFile()));
+    }
+
+    @Test
+    void showsProgressWhileRunning() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(16 * 1024, OUTPUT_SIZE, 0, 50), 2);
+        DownloadJob job = job("progress");
+        queue.submit(job);
+
+        waitUntil(() -> job.progressProperty().get() > 0);
+
+        assertTrue(job.progressProperty().get() > 0 && job.progressProperty().get() < 1,
+            String.valueOf(job.progressProperty().get()));
+        assertTrue(job.detailProperty().get().contains("/s - ETA"), job.detailProperty().get());
+        queue.cancel(job);
+    }
+
+    @Test
+    void submitAllChangesTheJobListOnce() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(64 * OUTPUT_SIZE, OUTPUT_SIZE, 0, 5), 2);
+        AtomicInteger changes = new AtomicInteger();
+        queue.getJobs().addListener((ListChangeListener<DownloadJob>) change -> changes.incrementAndGet());
+        List<DownloadJob> batch = List.of(job("batch0"), job("batch1"), job("batch2"));
+
+        queue.submitAll(batch);
+
+        assertEquals(1, changes.get());
+        assertEquals(batch, queue.getJobs());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(JobStatus.COMPLETED, finished.poll(10, TimeUnit.SECONDS).getStatus());
+        }
+    }
+
+    @Test
+    void failsJobWhenYtDlpExitsWithError() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(64 * OUTPUT_SIZE, OUTPUT_SIZE, 1.0, 5), 2);
+        DownloadJob job = job("broken");
+        queue.submit(job);
+
+        assertSame(job, finished.poll(10, TimeUnit.SECONDS));
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertTrue(job.getErrorMessage().contains("exit code"), job.getErrorMessage());
+        assertTrue(job.messageProperty().get().startsWith("ERROR:"), job.messageProperty().get());
+    }
+
+    @Test
+    void cancelKillsRunningDownload() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(1024, OUTPUT_SIZE, 0, 100), 2);
+        DownloadJob job = job("slow");
+        queue.submit(job);
+        waitUntil(() -> job.getPendingStatus() == JobStatus.RUNNING);
+
+        queue.cancel(job);
+
+        assertSame(job, finished.poll(10, TimeUnit.SECONDS));
+        assertEquals(JobStatus.CANCELLED, job.getStatus());
+        waitUntil(() -> queue.getRunningCount() == 0);
+        assertEquals(0, queue.getRunningCount());
+    }
+
+    @Test
+    void cancelledPendingJobNeverStarts() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(1024, OUTPUT_SIZE, 0, 100), 1);
+        DownloadJob running = job("first");
+        DownloadJob pending = job("second");
+        queue.submit(running);
+        queue.submit(pending);
+        waitUntil(() -> running.getPendingStatus() == JobStatus.RUNNING);
+
+        queue.cancel(pending);
+
+        assertSame(pending, finished.poll(10, TimeUnit.SECONDS));
+        assertEquals(JobStatus.CANCELLED, pending.getStatus());
+        assertEquals(JobStatus.RUNNING, running.getPendingStatus());
+        assertNull(pending.getOutputFile());
+    }
+
+    @Test
+    void cancelAllStopsRunningAndPendingJobs() throws Exception {
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(1024, OUTPUT_SIZE, 0, 100), 2);
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            DownloadJob job = job("all" + i);
+            jobs.add(job);
+            queue.submit(job);
+        }
+        waitUntil(() -> queue.getRunningCount() == 2);
+
+        queue.cancelAll();
+
+        for (int i = 0; i < jobs.size(); i++) {
+            DownloadJob job = finished.poll(10, TimeUnit.SECONDS);
+            assertEquals(JobStatus.CANCELLED, job.getStatus());
+        }
+        assertTrue(jobs.stream().allMatch(job -> job.getStatus() == JobStatus.CANCELLED));
+    }
+
+    @Test
+    void throttledDownloadsHalveTheSiteLimit() throws Exception {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(4, 8);
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(16 * OUTPUT_SIZE, OUTPUT_SIZE, 0, 1.0, 5, null),
+            8, controller);
+        List<DownloadJob> batch = List.of(job("t0"), job("t1"), job("t2"), job("t3"));
+
+        queue.submitAll(batch);
+
+        for (int i = 0; i < batch.size(); i++) {
+            // yt-dlp retries after a 429, so the downloads still complete
+            assertEquals(JobStatus.COMPLETED, finished.poll(10, TimeUnit.SECONDS).getStatus());
+        }
+        // Halved once: the other jobs saw the same burst within the cooldown
+        assertEquals(2, controller.getLimit("youtube.com"));
+    }
+
+    @Test
+    void cleanDownloadsRaiseTheSiteLimit() throws Exception {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(2, 8);
+        DownloadQueue queue = queue(new FakeYtDlpLauncher(64 * OUTPUT_SIZE, OUTPUT_SIZE, 0, 0, 5, null),
+            8, controller);
+        List<DownloadJob> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(job("clean" + i));
+        }
+
+        queue.submitAll(batch);
+
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(JobStatus.COMPLETED, finished.poll(10, TimeUnit.SECONDS).getStatus());
+        }
+        // 1/limit per success: ten clean downloads take 2 to about 4.8
+        assertEquals(4, controller.getLimit("youtube.com"));
+    }
+
+    // Flushes on the queue's own flush thread instead of the JavaFX one
+    private DownloadQueue queue(FakeYtDlpLauncher launcher, int maxConcurrent) {
+        return queue(launcher, maxConcurrent, new AdaptiveConcurrencyController(maxConcurrent, maxConcurrent));
+    }
+
+    private DownloadQueue queue(FakeYtDlpLauncher launcher, int maxConcurrent,
+                                AdaptiveConcurrencyController controller) {
+        DownloadQueue queue = new DownloadQueue(new DownloadService(launcher), maxConcurrent, Runnable::run,
+            controller);
+        queue.setOnJobFinished(finished::add);
+        queues.add(queue);
+        return queue;
+    }
+
+    private DownloadJob job(String videoId) {
+        return new DownloadJob("https://www.youtube.com/watch?v=" + videoId, BEST, dir.toString(), false, null);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
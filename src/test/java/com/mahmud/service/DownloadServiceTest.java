@@ -0,0 +1,143 @@
+package com.mahmud.service;
+
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.DownloadProgress;
+import com.mahmud.util.FakeYtDlpLauncher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadServiceTest {
+    private static final DownloadOption BEST = new DownloadOption("best", "mp4", "1080p", null, "Best quality");
+    private static final DownloadOption AUDIO = new DownloadOption("bestaudio", "m4a", "audio only", null,
+        "Best audio quality");
+    private static final DownloadOption VIDEO_ONLY = new DownloadOption("bestvideo", "webm", "1080p", null,
+        "Best video only");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesProgressLines() throws Exception {
+        List<DownloadProgress> progress = new ArrayList<>();
+        run(BEST, List.of(
+            "[download] Destination: {destination}",
+            "[download]   0.5% of   10.00MiB at  512.00KiB/s ETA 00:19",
+            "[download]  42.0% of   10.00MiB at    1.25MiB/s ETA 00:05",
+            "[download] 100% of   10.00MiB in 00:00:08 at 1.22MiB/s"), progress, new ArrayList<>());
+
+        assertEquals(2, progress.size());
+        assertEquals(0.5, progress.get(0).getPercentage(), 0);
+        assertEquals(42.0, progress.get(1).getPercentage(), 0);
+        assertEquals("1.25MiB/s", progress.get(1).getSpeed());
+        assertEquals("00:05", progress.get(1).getEta());
+        assertEquals(10L * 1024 * 1024, progress.get(1).getTotalBytes());
+        assertEquals(4404019L, progress.get(1).getDownloadedBytes());
+    }
+
+    @Test
+    void progressOfUnknownOrEstimatedSize() throws Exception {
+        List<DownloadProgress> progress = new ArrayList<>();
+        run(BEST, List.of(
+            "[download]  10.0% of ~  20.00MiB at    1.00MiB/s ETA 00:18",
+            "[download]  10.0% of Unknown total size at 1.00MiB/s ETA Unknown",
+            "[download]  20.0% at    1.00MiB/s ETA 00:16"), progress, new ArrayList<>());
+
+        assertEquals(2, progress.size());
+        assertEquals(20L * 1024 * 1024, progress.get(0).getTotalBytes());
+        assertEquals(20.0, progress.get(1).getPercentage(), 0);
+        assertNull(progress.get(1).getTotalBytes());
+    }
+
+    @Test
+    void outputFileIsTheMergedFile() throws Exception {
+        DownloadJob job = run(BEST, List.of(
+            "[download] Destination: " + dir.resolve("clip.f137.mp4"),
+            "[download] 100.0% of 1.00MiB at 1.00MiB/s ETA 00:00",
+            "[download] Destination: " + dir.resolve("clip.f140.m4a"),
+            "[download] 100.0% of 1.00MiB at 1.00MiB/s ETA 00:00"), new ArrayList<>(), new ArrayList<>());
+
+        // The fake prints the Merger line last, for the file named by -o
+        assertEquals(dir.resolve("Fake video vid.mp4"), job.getOutputFile());
+    }
+
+    @Test
+    void outputFileIsTheExtractedAudio() throws Exception {
+        DownloadJob job = run(AUDIO, List.of(
+            "[download] Destination: " + dir.resolve("clip.webm"),
+            "[download] 100.0% of 1.00MiB at 1.00MiB/s ETA 00:00"), new ArrayList<>(), new ArrayList<>());
+
+        assertEquals(dir.resolve("Fake video vid.mp3"), job.getOutputFile());
+    }
+
+    @Test
+    void outputFileOfAnEarlierDownload() throws Exception {
+        DownloadJob job = run(VIDEO_ONLY, List.of(
+            "[download] " + dir.resolve("old.webm") + " has already been downloaded"),
+            new ArrayList<>(), new ArrayList<>());
+
+        assertEquals(dir.resolve("old.webm"), job.getOutputFile());
+    }
+
+    @Test
+    void passesEveryLineToTheStatusCallback() throws Exception {
+        List<String> lines = new ArrayList<>();
+        run(BEST, List.of("[youtube] Extracting URL: {url}", "[download] Destination: {destination}"),
+            new ArrayList<>(), lines);
+
+        assertEquals("[youtube] Extracting URL: https://www.youtube.com/watch?v=vid", lines.get(0));
+        assertEquals("[download] Destination: " + dir.resolve("Fake video vid.mp4"), lines.get(1));
+    }
+
+    @Test
+    void throttleSignalsAreYtDlpErrorsAndWarnings() {
+        assertTrue(DownloadService.isThrottleSignal(
+            "ERROR: [youtube] abc: Unable to download webpage: HTTP Error 429: Too Many Requests"));
+        assertTrue(DownloadService.isThrottleSignal(
+            "WARNING: [youtube] abc: Too Many Requests, retrying"));
+        assertTrue(DownloadService.isThrottleSignal(
+            "ERROR: [youtube] abc: Sign in to confirm you're not a bot. Use --cookies-from-browser"));
+        assertTrue(DownloadService.isThrottleSignal(
+            "[download] Got error: HTTP Error 429: Too Many Requests. Retrying (1/10)..."));
+    }
+
+    @Test
+    void titlesAreNotThrottleSignals() {
+        assertFalse(DownloadService.isThrottleSignal(
+            "[download] Destination: /music/Too Many Requests - HTTP Error 429 (Live).mp4"));
+        assertFalse(DownloadService.isThrottleSignal(
+            "[Merger] Merging formats into \"/videos/How to rate limit an API.mp4\""));
+        assertFalse(DownloadService.isThrottleSignal(
+            "ERROR: unable to download video data: HTTP Error 403: Forbidden"));
+        assertFalse(DownloadService.isThrottleSignal(
+            "[download] Got error: HTTP Error 403: Forbidden. Retrying (1/10)..."));
+    }
+
+    @Test
+    void parsesRates() {
+        assertEquals(1.25 * 1024 * 1024, DownloadService.parseRate("1.25MiB/s"), 1e-6);
+        assertEquals(512 * 1024, DownloadService.parseRate("512.00KiB/s"), 1e-6);
+        assertEquals(3e6, DownloadService.parseRate("3MB/s"), 1e-6);
+        assertEquals(-1, DownloadService.parseRate("Unknown B/s"), 0);
+        assertEquals(-1, DownloadService.parseRate(null), 0);
+    }
+
+    // Replays the transcript through the fake on this thread
+    private DownloadJob run(DownloadOption option, List<String> transcript, List<DownloadProgress> progress,
+                            List<String> lines) throws Exception {
+        DownloadService service = new DownloadService(new FakeYtDlpLauncher(1024 * 1024 * 1024, 1024, 0, 1,
+            transcript));
+        DownloadJob job = new DownloadJob("https://www.youtube.com/watch?v=vid", option, dir.toString(), false, null);
+        service.download(job, progress::add, lines::add);
+        return job;
+    }
+}
@@ -0,0 +1,181 @@
+package com.mahmud.service;
+
+import com.mahmud.model.BatchBudget;
+import com.mahmud.model.DownloadJob;
+import com.mahmud.model.DownloadOption;
+import com.mahmud.model.DownloadProgress;
+import com.mahmud.util.FakeYtDlpLauncher;
+import com.mahmud.util.ProcessLauncher;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The fake reports 1080p as 108 MiB, so 720p is 72 MiB, 480p 48 MiB and 360p 36 MiB
+// (audio included)
+class QualityPlannerTest {
+    private static final long MIB = 1024 * 1024;
+    private static final FakeYtDlpLauncher FAKE = new FakeYtDlpLauncher(8 * MIB, 108 * MIB, 0, 100);
+    // Probes of URLs containing "broken" fail
+    private final AtomicLong nanos = new AtomicLong();
+    private static final ProcessLauncher LAUNCHER = command -> {
+        if (command.contains("-J") && command.get(command.size() - 1).contains("broken")) {
+            throw new IOException("probe failed");
+        }
+        return FAKE.start(command);
+    };
+
+    @Test
+    void splitsSizeBudgetOverTheBatch() throws Exception {
+        QualityPlanner planner = planner("100MiB");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+
+        // 50 MiB each fits 480p
+        assertEquals("480p", planner.plan(first).getResolution());
+        // What the first left over (52 MiB) still only fits 480p
+        assertEquals("480p", planner.plan(second).getResolution());
+    }
+
+    @Test
+    void leftoverBudgetGoesToLaterJobs() throws Exception {
+        QualityPlanner planner = planner("150MiB");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+
+        DownloadOption option = planner.plan(first);
+        assertEquals("720p", option.getResolution());
+        assertEquals("best[height<=720]", option.getFormatId());
+        planner.onFinished(first, true);
+        // 78 MiB left for the last one
+        assertEquals("720p", planner.plan(second).getResolution());
+    }
+
+    @Test
+    void failedDownloadsDoNotUseUpASizeBudget() throws Exception {
+        QualityPlanner planner = planner("100MiB");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+
+        assertEquals("480p", planner.plan(first).getResolution());
+        planner.onProgress(first, progress(50, 48 * MIB));
+        planner.onFinished(first, false);
+        // No file was kept, so the whole budget is left
+        assertEquals("720p", planner.plan(second).getResolution());
+    }
+
+    @Test
+    void usesLowestResolutionWhenNothingFits() throws Exception {
+        QualityPlanner planner = planner("10MiB");
+
+        assertEquals("360p", planner.plan(register(planner, "a")).getResolution());
+    }
+
+    @Test
+    void failedProbeGivesItsShareBack() throws Exception {
+        QualityPlanner planner = planner("100MiB");
+        DownloadJob broken = register(planner, "broken");
+        DownloadJob good = register(planner, "a");
+
+        assertThrows(IOException.class, () -> planner.plan(broken));
+        // The whole budget is left for the one job still to come
+        assertEquals("720p", planner.plan(good).getResolution());
+    }
+
+    @Test
+    void forgottenJobsGiveTheirShareBack() throws Exception {
+        QualityPlanner planner = planner("100MiB");
+        DownloadJob cancelled = register(planner, "c");
+        DownloadJob good = register(planner, "a");
+
+        planner.forget(cancelled);
+        assertEquals("720p", planner.plan(good).getResolution());
+    }
+
+    @Test
+    void slowBatchDowngradesLaterJobs() throws Exception {
+        QualityPlanner planner = planner("10m");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+        register(planner, "c");
+
+        // Assumed 1 MiB/s over 10 minutes: 200 MiB each
+        assertEquals("1080p", planner.plan(first).getResolution());
+        // Half the time gone and only a fifth of the first video here
+        advance(300);
+        planner.onProgress(first, progress(20, 108 * MIB));
+
+        assertEquals("360p", planner.plan(second).getResolution());
+    }
+
+    @Test
+    void batchOnScheduleKeepsItsQuality() throws Exception {
+        QualityPlanner planner = planner("10m");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+        register(planner, "c");
+
+        assertEquals("1080p", planner.plan(first).getResolution());
+        advance(60);
+        planner.onFinished(first, true);
+
+        // 1.8 MiB/s measured leaves 486 MiB for each of the last two
+        assertEquals("1080p", planner.plan(second).getResolution());
+    }
+
+    @Test
+    void audioStreamDoesNotResetProgress() throws Exception {
+        QualityPlanner planner = planner("10m");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+        register(planner, "c");
+
+        assertEquals("1080p", planner.plan(first).getResolution());
+        advance(100);
+        // bestvideo+bestaudio: the video stream is done and yt-dlp starts over at 0% for the audio
+        planner.onProgress(first, progress(99.9, 103 * MIB));
+        planner.onProgress(first, progress(5, 5 * MIB));
+
+        // About 103 MiB in 100 s is on schedule; counting only 5% of the job would not be
+        assertEquals("1080p", planner.plan(second).getResolution());
+    }
+
+    @Test
+    void progressWithoutStreamSizesNeverGoesBack() throws Exception {
+        QualityPlanner planner = planner("10m");
+        DownloadJob first = register(planner, "a");
+        DownloadJob second = register(planner, "b");
+        register(planner, "c");
+
+        assertEquals("1080p", planner.plan(first).getResolution());
+        advance(100);
+        planner.onProgress(first, new DownloadProgress(99.9, "1.00MiB/s", "00:00", null, null));
+        planner.onProgress(first, new DownloadProgress(5, "1.00MiB/s", "00:05", null, null));
+
+        assertEquals("1080p", planner.plan(second).getResolution());
+    }
+
+    private QualityPlanner planner(String budget) {
+        return new QualityPlanner(BatchBudget.parse(budget), new YtDlpService(LAUNCHER), nanos::get);
+    }
+
+    private void advance(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private static DownloadProgress progress(double percentage, long streamBytes) {
+        return new DownloadProgress(percentage, "1.00MiB/s", "00:10", (long) (streamBytes * percentage / 100),
+            streamBytes);
+    }
+
+    private static DownloadJob register(QualityPlanner planner, String videoId) {
+        DownloadJob job = new DownloadJob("https://www.youtube.com/watch?v=" + videoId, DownloadOption.AUTO,
+            System.getProperty("java.io.tmpdir"), false, null);
+        planner.register(job);
+        return job;
+    }
+}